@@ -1,9 +1,14 @@
 package ggc.app;
 
 import pt.tecnico.uilib.Dialog;
+import pt.tecnico.uilib.menus.Command;
+import pt.tecnico.uilib.menus.CommandStatistics;
 import pt.tecnico.uilib.menus.Menu;
+import pt.tecnico.uilib.text.SessionServer;
 import ggc.WarehouseManager;
 import ggc.exceptions.ImportFileException;
+import java.io.IOException;
+import javax.management.JMException;
 
 /** Main driver for the management application. */
 public class App {
@@ -13,6 +18,13 @@ public class App {
     try (var ui = Dialog.UI) {
       WarehouseManager manager = new WarehouseManager();
 
+      try {
+        manager.registerMBean();
+      } catch (JMException e) {
+        // metrics are optional: just present the problem
+        e.printStackTrace();
+      }
+
       String datafile = System.getProperty("import");
       if (datafile != null) {
         try {
@@ -23,8 +35,45 @@ public class App {
         }
       }
 
-      Menu menu = new ggc.app.main.Menu(manager);
-      menu.open();
+      // -Dstats=true: per-command counts and latencies, reported on exit
+      CommandStatistics statistics = null;
+      if (Boolean.getBoolean("stats")) {
+        statistics = new CommandStatistics();
+        Command.setListener(statistics);
+      }
+
+      // -Dport=N: serve the menus to local TCP sessions (at most -Dsessions=M at once)
+      Integer port = Integer.getInteger("port");
+      if (port != null) {
+        serve(manager, port, Integer.getInteger("sessions", DEFAULT_SESSIONS));
+      } else {
+        Menu menu = new ggc.app.main.Menu(manager);
+        menu.open();
+      }
+
+      if (statistics != null) {
+        System.err.print(statistics);
+      }
+    }
+  }
+
+  /** Default maximum number of simultaneous sessions. */
+  private static final int DEFAULT_SESSIONS = 64;
+
+  /**
+   * Runs the main menu for each local TCP session, all on the same manager.
+   *
+   * @param manager     the shared manager.
+   * @param port        port to listen on.
+   * @param maxSessions maximum number of simultaneous sessions.
+   */
+  private static void serve(WarehouseManager manager, int port, int maxSessions) {
+    try (SessionServer server = new SessionServer(port, maxSessions, dialog -> new ggc.app.main.Menu(manager).open())) {
+      System.err.println("Listening on port " + server.port());
+      server.serve();
+    } catch (IOException | InterruptedException e) {
+      // no behavior described: just present the problem
+      e.printStackTrace();
     }
   }
 
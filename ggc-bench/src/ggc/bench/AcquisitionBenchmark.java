@@ -0,0 +1,37 @@
+package ggc.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ggc.exceptions.*;
+import ggc.transactions.Acquisition;
+
+/**
+ * Acquisitions that undercut the cheapest batch, so that every one of them
+ * emits a BARGAIN notification to the mailbox of every partner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcquisitionBenchmark extends WarehouseState {
+
+  /** Price of the next acquisition; always below every batch in the fixture. */
+  private float _price;
+
+  @Override
+  protected void prepare() {
+    _price = 0.5f;
+  }
+
+  @Benchmark
+  public Acquisition acquireWithNotifications() throws NoSuchPartnerException, NoSuchProductException {
+    String product = WarehouseFixture.simpleId(0);
+    Acquisition acquisition = _warehouse.acquire(nextPartner(), product, 1, _price, false);
+    _price *= 0.9999f;
+    _next++;
+    return acquisition;
+  }
+
+}
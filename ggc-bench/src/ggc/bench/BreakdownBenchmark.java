@@ -0,0 +1,42 @@
+package ggc.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ggc.exceptions.*;
+import ggc.products.Product;
+import ggc.transactions.Breakdown;
+
+/**
+ * Breakdowns of derivative products into their components.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BreakdownBenchmark extends WarehouseState {
+
+  /** Give every derivative product a batch to break down. */
+  @Override
+  protected void prepare() {
+    try {
+      for (int i = 0; i < WarehouseFixture.derivatives(products); i++) {
+        Product product = _warehouse.lookupProduct(WarehouseFixture.derivativeId(i));
+        _warehouse.registerNewBatch(product, _warehouse.lookupPartner(WarehouseFixture.partnerId(i % partners)), 100,
+            WarehouseFixture.BATCH_STOCK);
+      }
+    } catch (NoSuchPartnerException | NoSuchProductException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Benchmark
+  public Breakdown breakdown() throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    String product = WarehouseFixture.derivativeId(_next % WarehouseFixture.derivatives(products));
+    Breakdown breakdown = _warehouse.attemptBreakdown(nextPartner(), product, 1);
+    _next++;
+    return breakdown;
+  }
+
+}
@@ -0,0 +1,56 @@
+package ggc.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import ggc.exceptions.*;
+import ggc.transactions.Sale;
+
+/**
+ * Sales from several threads against one shared warehouse. In "disjoint",
+ * each thread sells its own products; in "shared", all threads sell the same
+ * product. Run with -t to vary the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConcurrentSaleBenchmark extends WarehouseState {
+
+  /** Each thread's position in the rotation through partners and products. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int thread;
+    int threads;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void reset(ThreadParams params) {
+      thread = params.getThreadIndex();
+      threads = params.getThreadCount();
+      next = 0;
+    }
+  }
+
+  @Benchmark
+  public Sale disjoint(Cursor cursor) throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    int slice = Math.max(1, products / cursor.threads);
+    String product = WarehouseFixture.simpleId((cursor.thread * slice + cursor.next % slice) % products);
+    return sell(cursor, product);
+  }
+
+  @Benchmark
+  public Sale shared(Cursor cursor) throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    return sell(cursor, WarehouseFixture.simpleId(0));
+  }
+
+  private Sale sell(Cursor cursor, String product) throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    String partner = WarehouseFixture.partnerId(cursor.next % partners);
+    cursor.next++;
+    return _warehouse.attemptSale(partner, product, 1, cursor.next);
+  }
+
+}
@@ -0,0 +1,70 @@
+package ggc.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ggc.exceptions.*;
+import ggc.partners.Partner;
+import ggc.products.Product;
+import ggc.transactions.Sale;
+
+/**
+ * Sales against a partner holding many batches, the cheapest of every
+ * product. A sale either takes a unit from one of them, which moves the
+ * batch within the partner's listing and the product's heap, or uses up a
+ * batch of one unit registered for it, which leaves both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartnerBatchesBenchmark extends WarehouseState {
+
+  /** Number of batches of the partner that supplies the cheap batches. */
+  @Param({ "1000", "10000" })
+  public int partnerBatches;
+
+  /** Partner supplying the cheap batches. */
+  private Partner _supplier;
+
+  /** Give the first partner partnerBatches cheap batches, spread over the simple products. */
+  @Override
+  protected void prepare() {
+    try {
+      _supplier = _warehouse.lookupPartner(WarehouseFixture.partnerId(0));
+      for (int i = 0; i < partnerBatches; i++) {
+        _warehouse.registerNewBatch(cheapProduct(i), _supplier, 0.5f, WarehouseFixture.BATCH_STOCK);
+      }
+    } catch (NoSuchPartnerException | NoSuchProductException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param i batch number
+   * @return simple product the batch is of
+   */
+  private Product cheapProduct(int i) throws NoSuchProductException {
+    return _warehouse.lookupProduct(WarehouseFixture.simpleId(i % products));
+  }
+
+  /** Sells a unit from one of the supplier's batches, which stays. */
+  @Benchmark
+  public Sale saleFromBatch() throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    Sale sale = _warehouse.attemptSale(nextPartner(), cheapProduct(_next).getId(), 1, _next);
+    _next++;
+    return sale;
+  }
+
+  /** Registers an even cheaper batch of one unit for the supplier, and sells it. */
+  @Benchmark
+  public Sale saleUsingUpBatch() throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    Product product = cheapProduct(_next);
+    _warehouse.registerNewBatch(product, _supplier, 0.25f, 1);
+    Sale sale = _warehouse.attemptSale(nextPartner(), product.getId(), 1, _next);
+    _next++;
+    return sale;
+  }
+
+}
@@ -0,0 +1,90 @@
+package ggc.bench;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ggc.Warehouse;
+import ggc.WarehouseManager;
+import ggc.exceptions.*;
+
+/**
+ * Importing text files, and saving and loading serialized state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+  @Param({ "10", "1000" })
+  public int partners;
+
+  @Param({ "100" })
+  public int products;
+
+  @Param({ "1", "50" })
+  public int batches;
+
+  @Param({ "1000" })
+  public int transactions;
+
+  /** Text file in the import format. */
+  private File _importFile;
+
+  /** Serialized warehouse state. */
+  private File _stateFile;
+
+  /** Manager associated with the serialized state. */
+  private WarehouseManager _manager;
+
+  @Setup(Level.Trial)
+  public void writeFiles() throws IOException, ImportFileException, MissingFileAssociationException, NoSuchDateException {
+    _importFile = File.createTempFile("ggc-bench", ".txt");
+    _stateFile = File.createTempFile("ggc-bench", ".dat");
+    WarehouseFixture.writeImportFile(_importFile.getPath(), partners, products, batches);
+
+    _manager = new WarehouseManager();
+    _manager.importFile(_importFile.getPath());
+    for (int i = 0; i < transactions; i++) {
+      try {
+        _manager.requestAttemptSale(WarehouseFixture.partnerId(i % partners), i,
+            WarehouseFixture.simpleId(i % products), 1);
+      } catch (NotEnoughProductsException | NoSuchPartnerException | NoSuchProductException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    _manager.saveAs(_stateFile.getPath());
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFiles() {
+    _importFile.delete();
+    _stateFile.delete();
+  }
+
+  @Benchmark
+  public Warehouse importFile() throws IOException, BadEntryException, DuplicatePartnerException,
+      NoSuchPartnerException, NoSuchProductException {
+    Warehouse warehouse = new Warehouse();
+    warehouse.importFile(_importFile.getPath());
+    return warehouse;
+  }
+
+  @Benchmark
+  public WarehouseManager save() throws IOException, MissingFileAssociationException, NoSuchDateException {
+    // save() only writes when there are unsaved changes: advancing the date is the cheapest one
+    _manager.requestDateToAdvance(1);
+    _manager.save();
+    return _manager;
+  }
+
+  @Benchmark
+  public WarehouseManager load() throws UnavailableFileException {
+    WarehouseManager manager = new WarehouseManager();
+    manager.load(_stateFile.getPath());
+    return manager;
+  }
+
+}
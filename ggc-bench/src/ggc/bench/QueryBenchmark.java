@@ -0,0 +1,34 @@
+package ggc.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ggc.products.Batch;
+
+/**
+ * Read-only queries: balance computation and batch listings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark extends WarehouseState {
+
+  @Benchmark
+  public double contabilisticBalance() {
+    return _warehouse.getContabilisticBalance();
+  }
+
+  @Benchmark
+  public List<Batch> listAllBatches() {
+    return _warehouse.listAllBatches();
+  }
+
+  @Benchmark
+  public List<Batch> listBatchesUnderGivenPrice() {
+    return _warehouse.listBatchesUnderGivenPrice(500);
+  }
+
+}
@@ -0,0 +1,35 @@
+package ggc.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ggc.exceptions.*;
+import ggc.transactions.Sale;
+
+/**
+ * Sales of products in stock and of derivative products that must be crafted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaleBenchmark extends WarehouseState {
+
+  @Benchmark
+  public Sale saleFromStock() throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    String product = WarehouseFixture.simpleId(_next % products);
+    Sale sale = _warehouse.attemptSale(nextPartner(), product, 1, _next);
+    _next++;
+    return sale;
+  }
+
+  @Benchmark
+  public Sale saleWithCrafting() throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
+    String product = WarehouseFixture.derivativeId(_next % WarehouseFixture.derivatives(products));
+    Sale sale = _warehouse.attemptSale(nextPartner(), product, 1, _next);
+    _next++;
+    return sale;
+  }
+
+}
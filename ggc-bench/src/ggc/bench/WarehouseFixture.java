@@ -0,0 +1,141 @@
+package ggc.bench;
+
+import java.io.*;
+import java.util.*;
+import ggc.Warehouse;
+import ggc.exceptions.*;
+import ggc.partners.*;
+import ggc.products.*;
+
+/**
+ * Builds deterministic synthetic warehouses for the benchmarks.
+ *
+ * Partners are named P0..Pn, simple products S0..Sn and derivative products
+ * D0..Dn (one for every four simple products), each derivative being made of
+ * two consecutive simple products.
+ */
+public class WarehouseFixture {
+
+  /** Seed used for every random choice, so that runs are comparable. */
+  public static final long SEED = 20211108L;
+
+  /** Stock of each generated batch (large enough never to run out during an iteration). */
+  public static final int BATCH_STOCK = 1_000_000;
+
+  /**
+   * @param i partner number
+   * @return partner's id
+   */
+  public static String partnerId(int i) {
+    return "P" + i;
+  }
+
+  /**
+   * @param i simple product number
+   * @return product's id
+   */
+  public static String simpleId(int i) {
+    return "S" + i;
+  }
+
+  /**
+   * @param i derivative product number
+   * @return product's id
+   */
+  public static String derivativeId(int i) {
+    return "D" + i;
+  }
+
+  /**
+   * @param products number of simple products (at least two)
+   * @return number of derivative products built on top of them
+   */
+  public static int derivatives(int products) {
+    return Math.max(1, products / 4);
+  }
+
+  /**
+   * Builds a warehouse through its public API. Derivative products are
+   * registered without stock, so selling them always requires crafting.
+   *
+   * @param partners number of partners
+   * @param products number of simple products (at least two)
+   * @param batches number of batches of each simple product
+   * @param transactions number of sales already registered (every fourth is paid)
+   * @return the new warehouse
+   */
+  public static Warehouse build(int partners, int products, int batches, int transactions) {
+    Warehouse warehouse = new Warehouse();
+    Random random = new Random(SEED);
+
+    try {
+      for (int i = 0; i < partners; i++) {
+        warehouse.registerNewPartner(partnerId(i), "Partner " + i, "Street " + i);
+      }
+
+      for (int i = 0; i < products; i++) {
+        for (int j = 0; j < batches; j++) {
+          float price = 1 + random.nextInt(1000);
+          Partner partner = warehouse.lookupPartner(partnerId(random.nextInt(partners)));
+          ProductSimple product = warehouse.registerProductSimple(simpleId(i), price, BATCH_STOCK);
+          warehouse.registerNewBatch(product, partner, price, BATCH_STOCK);
+        }
+      }
+
+      for (int i = 0; i < derivatives(products); i++) {
+        Recipe recipe = new Recipe();
+        recipe.addProduct(warehouse.lookupProduct(simpleId(i % products)), 1 + random.nextInt(3));
+        recipe.addProduct(warehouse.lookupProduct(simpleId((i + 1) % products)), 1 + random.nextInt(3));
+        warehouse.registerProductDerivative(derivativeId(i), recipe, 0.1f, 0, 0);
+      }
+
+      for (int i = 0; i < transactions; i++) {
+        warehouse.attemptSale(partnerId(i % partners), simpleId(i % products), 1, i);
+        if (i % 4 == 0) {
+          warehouse.pay(i);
+        }
+      }
+    } catch (DuplicatePartnerException | NoSuchPartnerException | NoSuchProductException
+        | NotEnoughProductsException | NoSuchTransactionException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return warehouse;
+  }
+
+  /**
+   * Writes an import file describing the same kind of warehouse as
+   * {@link #build(int, int, int, int)}, except that derivative products get
+   * one batch each (the import format has no other way of declaring them).
+   *
+   * @param filename file to write
+   * @param partners number of partners
+   * @param products number of simple products (at least two)
+   * @param batches number of batches of each simple product
+   * @throws IOException
+   */
+  public static void writeImportFile(String filename, int partners, int products, int batches) throws IOException {
+    Random random = new Random(SEED);
+
+    try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
+      for (int i = 0; i < partners; i++) {
+        out.println("PARTNER|" + partnerId(i) + "|Partner " + i + "|Street " + i);
+      }
+
+      for (int i = 0; i < products; i++) {
+        for (int j = 0; j < batches; j++) {
+          out.println("BATCH_S|" + simpleId(i) + "|" + partnerId(random.nextInt(partners)) + "|"
+              + (1 + random.nextInt(1000)) + "|" + BATCH_STOCK);
+        }
+      }
+
+      for (int i = 0; i < derivatives(products); i++) {
+        out.println("BATCH_M|" + derivativeId(i) + "|" + partnerId(random.nextInt(partners)) + "|"
+            + (1 + random.nextInt(1000)) + "|" + BATCH_STOCK + "|0.1|"
+            + simpleId(i % products) + ":" + (1 + random.nextInt(3)) + "#"
+            + simpleId((i + 1) % products) + ":" + (1 + random.nextInt(3)));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+package ggc.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ggc.Warehouse;
+
+/**
+ * Parameters shared by every benchmark, and the warehouse they run against.
+ * The warehouse is rebuilt before each iteration, since most operations
+ * being measured grow it.
+ */
+@State(Scope.Thread)
+public abstract class WarehouseState {
+
+  /** Number of registered partners (and of mailboxes a notification fans out to). */
+  @Param({ "10", "1000" })
+  public int partners;
+
+  /** Number of simple products. */
+  @Param({ "100" })
+  public int products;
+
+  /** Number of batches of each simple product. */
+  @Param({ "1", "50" })
+  public int batches;
+
+  /** Number of sales registered before measuring. */
+  @Param({ "1000" })
+  public int transactions;
+
+  /** The warehouse under test. */
+  protected Warehouse _warehouse;
+
+  /** Invocation counter, used to rotate through partners and products. */
+  protected int _next;
+
+  @Setup(Level.Iteration)
+  public void buildWarehouse() {
+    _warehouse = WarehouseFixture.build(partners, products, batches, transactions);
+    _next = 0;
+    prepare();
+  }
+
+  /**
+   * Hook for benchmark-specific preparation, run after the warehouse is
+   * rebuilt (JMH does not order setup methods across the class hierarchy).
+   */
+  protected void prepare() {
+    // nothing by default
+  }
+
+  /** @return id of the next partner in the rotation */
+  protected String nextPartner() {
+    return WarehouseFixture.partnerId(_next % partners);
+  }
+
+}
@@ -0,0 +1,90 @@
+package ggc;
+
+/**
+ * One operation of a batch (see WarehouseManager.requestBatch): a sale, an
+ * acquisition of a known product, a breakdown or a payment.
+ */
+public class BatchOperation {
+
+  /** Kinds of operations. */
+  public enum Kind { SALE, ACQUISITION, BREAKDOWN, PAYMENT }
+
+  /** Kind of operation */
+  private final Kind _kind;
+  /** Partner's id (not used by payments) */
+  private final String _partner;
+  /** Product's id (not used by payments) */
+  private final String _product;
+  /** Product's amount (not used by payments) */
+  private final int _amount;
+  /** Unit price (acquisitions only) */
+  private final float _price;
+  /** Payment deadline (sales only) */
+  private final int _deadline;
+  /** Id of the sale to pay (payments only) */
+  private final int _transaction;
+
+  private BatchOperation(Kind kind, String partner, String product, int amount, float price, int deadline, int transaction) {
+    _kind = kind;
+    _partner = partner;
+    _product = product;
+    _amount = amount;
+    _price = price;
+    _deadline = deadline;
+    _transaction = transaction;
+  }
+
+  /**
+   * @@param partner partner's id
+   * @@param product product's id
+   * @@param amount product's amount to be sold
+   * @@param deadline payment deadline
+   * @@return the sale, as a batch operation
+   */
+  public static BatchOperation sale(String partner, String product, int amount, int deadline) {
+    return new BatchOperation(Kind.SALE, partner, product, amount, 0, deadline, -1);
+  }
+
+  /**
+   * @@param partner partner's id
+   * @@param product product's id (an existing product)
+   * @@param price unit price
+   * @@param amount product's amount to be acquired
+   * @@return the acquisition, as a batch operation
+   */
+  public static BatchOperation acquisition(String partner, String product, float price, int amount) {
+    return new BatchOperation(Kind.ACQUISITION, partner, product, amount, price, 0, -1);
+  }
+
+  /**
+   * @@param partner partner's id
+   * @@param product product's id
+   * @@param amount product's amount to be broken down
+   * @@return the breakdown, as a batch operation
+   */
+  public static BatchOperation breakdown(String partner, String product, int amount) {
+    return new BatchOperation(Kind.BREAKDOWN, partner, product, amount, 0, 0, -1);
+  }
+
+  /**
+   * @@param transaction id of the sale to pay
+   * @@return the payment, as a batch operation
+   */
+  public static BatchOperation payment(int transaction) {
+    return new BatchOperation(Kind.PAYMENT, null, null, 0, 0, 0, transaction);
+  }
+
+  public Kind getKind() { return _kind; }
+
+  public String getPartner() { return _partner; }
+
+  public String getProduct() { return _product; }
+
+  public int getAmount() { return _amount; }
+
+  public float getPrice() { return _price; }
+
+  public int getDeadline() { return _deadline; }
+
+  public int getTransaction() { return _transaction; }
+}
@@ -0,0 +1,65 @@
+package ggc;
+
+import ggc.transactions.Transaction;
+
+/**
+ * Outcome of one operation of a batch: the transaction it made (or paid),
+ * or the exception that stopped it.
+ */
+public class BatchResult {
+
+  /** Transaction made or paid (null if the operation failed, or made none) */
+  private final Transaction _transaction;
+  /** Why the operation failed (null if it succeeded) */
+  private final Exception _error;
+
+  private BatchResult(Transaction transaction, Exception error) {
+    _transaction = transaction;
+    _error = error;
+  }
+
+  /**
+   * @@param transaction transaction made or paid (null if none, e.g., breaking down a simple product)
+   * @@return a successful result
+   */
+  static BatchResult succeeded(Transaction transaction) {
+    return new BatchResult(transaction, null);
+  }
+
+  /**
+   * @@param error why the operation failed
+   * @@return a failed result
+   */
+  static BatchResult failed(Exception error) {
+    return new BatchResult(null, error);
+  }
+
+  /**
+   * @@return whether the operation succeeded
+   */
+  public boolean succeeded() {
+    return _error == null;
+  }
+
+  /**
+   * @@return transaction made or paid (null if the operation failed, or made none)
+   */
+  public Transaction getTransaction() {
+    return _transaction;
+  }
+
+  /**
+   * @@return id of the transaction made or paid, or -1 if none
+   */
+  public int getTransactionId() {
+    return _transaction == null ? -1 : _transaction.getId();
+  }
+
+  /**
+   * @@return why the operation failed (a NoSuchPartnerException, NoSuchProductException,
+   *          NoSuchTransactionException or NotEnoughProductsException), or null if it succeeded
+   */
+  public Exception getError() {
+    return _error;
+  }
+}
@@ -0,0 +1,64 @@
+package ggc;
+
+/**
+ * Outcome of a batch compaction pass (see Warehouse.compactBatches): how
+ * many batches were merged into others, over how many products, how long it
+ * took, and whether it got through every product within its budget.
+ */
+public class CompactionResult {
+
+  /** Batches merged into another batch (and so gone) */
+  private final int _merged;
+  /** Products whose batches were examined */
+  private final int _products;
+  /** Time taken, in nanoseconds */
+  private final long _nanos;
+  /** Whether every product was examined */
+  private final boolean _complete;
+
+  /**
+   * @@param merged batches merged into another batch
+   * @@param products products whose batches were examined
+   * @@param nanos time taken, in nanoseconds
+   * @@param complete whether every product was examined
+   */
+  CompactionResult(int merged, int products, long nanos, boolean complete) {
+    _merged = merged;
+    _products = products;
+    _nanos = nanos;
+    _complete = complete;
+  }
+
+  /**
+   * @@return batches merged into another batch (and so gone)
+   */
+  public int getMerged() {
+    return _merged;
+  }
+
+  /**
+   * @@return products whose batches were examined
+   */
+  public int getProducts() {
+    return _products;
+  }
+
+  /**
+   * @@return time taken, in nanoseconds
+   */
+  public long getNanos() {
+    return _nanos;
+  }
+
+  /**
+   * @@return whether every product was examined (false if the budget ran out first)
+   */
+  public boolean isComplete() {
+    return _complete;
+  }
+
+  @Override
+  public String toString() {
+    return "merged " + _merged + " batches of " + _products + " products in " + (_nanos / 1000) + " us" + (_complete ? "" : " (budget ran out)");
+  }
+}
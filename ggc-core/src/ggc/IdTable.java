@@ -0,0 +1,177 @@
+package ggc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Handles of products or partners by id, ignoring case (as
+ * String.CASE_INSENSITIVE_ORDER does). The table is open-addressed with
+ * linear probing: each slot keeps the folded id, its hash and the handle, so
+ * a lookup folds the id it is given while hashing it, in one pass and
+ * without allocating, and only compares ids whose hashes match.
+ *
+ * Lookups take no lock: entries are added under the table's lock, and each
+ * slot is published by writing its id last (with release semantics), after
+ * its hash and handle. Listings do not use the table, which has no order
+ * (see Warehouse.listAllProducts).
+ */
+class IdTable {
+
+  /** Number of slots of an empty table */
+  private static final int INITIAL_CAPACITY = 16;
+  /** Reads and writes slots' ids with acquire and release semantics */
+  private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(String[].class);
+
+  /** Slots of a table */
+  private static class Slots {
+    /** Folded ids (null where the slot is free) */
+    final String[] keys;
+    /** Hashes of the folded ids */
+    final int[] hashes;
+    /** Handles */
+    final int[] handles;
+
+    Slots(int capacity) {
+      keys = new String[capacity];
+      hashes = new int[capacity];
+      handles = new int[capacity];
+    }
+  }
+
+  /** The slots (replaced by larger ones when the table grows) */
+  private volatile Slots _slots = new Slots(INITIAL_CAPACITY);
+  /** Number of entries */
+  private volatile int _size = 0;
+
+  /**
+   * @@param c a character
+   * @@return the character with its case folded
+   */
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /**
+   * @@param id an id
+   * @@return hash of the folded id
+   */
+  private static int hash(String id) {
+    int h = 0;
+
+    for (int i = 0; i < id.length(); i++) {
+      h = 31 * h + fold(id.charAt(i));
+    }
+
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @@param folded a folded id
+   * @@param id an id
+   * @@return whether the id folds to the folded id
+   */
+  private static boolean matches(String folded, String id) {
+    if (folded.length() != id.length()) {
+      return false;
+    }
+    for (int i = 0; i < id.length(); i++) {
+      if (folded.charAt(i) != fold(id.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Folds an id so that ids equal ignoring case are equal.
+   *
+   * @@param id an id
+   * @@return the folded id
+   */
+  static String fold(String id) {
+    char[] folded = id.toCharArray();
+
+    for (int i = 0; i < folded.length; i++) {
+      folded[i] = fold(folded[i]);
+    }
+
+    return new String(folded);
+  }
+
+  /**
+   * @@param id an id, in any case
+   * @@return the id's handle, or -1 if it has none
+   */
+  int get(String id) {
+    Slots slots = _slots;
+    int h = hash(id);
+    int mask = slots.keys.length - 1;
+    String key;
+
+    for (int i = h & mask; (key = (String) KEYS.getAcquire(slots.keys, i)) != null; i = (i + 1) & mask) {
+      if (slots.hashes[i] == h && matches(key, id)) {
+        return slots.handles[i];
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Adds an id, which must not be in the table.
+   *
+   * @@param id an id, in any case
+   * @@param handle the id's handle
+   */
+  synchronized void put(String id, int handle) {
+    Slots slots = _slots;
+
+    if (2 * (_size + 1) > slots.keys.length) {
+      slots = grow(slots);
+    }
+    insert(slots, fold(id), hash(id), handle);
+    _size++;
+  }
+
+  /**
+   * @@return number of ids
+   */
+  int size() {
+    return _size;
+  }
+
+  /**
+   * @@param slots the full slots
+   * @@return larger slots with the same entries, now the table's
+   */
+  private Slots grow(Slots slots) {
+    Slots larger = new Slots(2 * slots.keys.length);
+
+    for (int i = 0; i < slots.keys.length; i++) {
+      if (slots.keys[i] != null) {
+        insert(larger, slots.keys[i], slots.hashes[i], slots.handles[i]);
+      }
+    }
+    _slots = larger;
+
+    return larger;
+  }
+
+  /**
+   * @@param slots slots to insert in
+   * @@param folded folded id
+   * @@param h hash of the id
+   * @@param handle the id's handle
+   */
+  private static void insert(Slots slots, String folded, int h, int handle) {
+    int mask = slots.keys.length - 1;
+    int i = h & mask;
+
+    while (slots.keys[i] != null) {
+      i = (i + 1) & mask;
+    }
+    slots.hashes[i] = h;
+    slots.handles[i] = handle;
+    KEYS.setRelease(slots.keys, i, folded);
+  }
+}
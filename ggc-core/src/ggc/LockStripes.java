@@ -0,0 +1,203 @@
+package ggc;
+
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A fixed set of locks shared by keys (product or partner handles) that fall
+ * in the same stripe. Handles are dense, so consecutive handles take
+ * consecutive stripes.
+ *
+ * Several stripes are always taken in ascending order (see lockAll), which
+ * keeps operations that need more than one of them from deadlocking.
+ *
+ * Each stripe also has a version, which is odd while the stripe is held and
+ * grows each time it is taken or given back. Reads check it instead of
+ * taking the stripe (see read), as with StampedLock's optimistic reads, so
+ * they neither wait for the operations holding a stripe nor hold them off.
+ */
+class LockStripes {
+
+  /** Attempts at a read without the stripe before taking it. */
+  private static final int OPTIMISTIC_READS = 4;
+
+  /** The locks */
+  private final ReentrantLock[] _locks;
+
+  /** Version of each stripe (odd while held) */
+  private final AtomicLongArray _versions;
+
+  /**
+   * @@param stripes number of stripes (rounded up to a power of two)
+   */
+  LockStripes(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    _locks = new ReentrantLock[size];
+    _versions = new AtomicLongArray(size);
+
+    for (int i = 0; i < size; i++) {
+      _locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * @@param key product or partner handle
+   * @@return index of the key's stripe
+   */
+  int stripeOf(int key) {
+    return key & (_locks.length - 1);
+  }
+
+  /**
+   * @@return number of stripes
+   */
+  int stripes() {
+    return _locks.length;
+  }
+
+  /**
+   * Groups keys by stripe, in ascending stripe order (a counting sort).
+   *
+   * @@param keys product or partner handles
+   * @@param n number of keys
+   * @@param order indexes of the keys, grouped by stripe (filled in, at least n long)
+   * @@param bounds where each stripe's group starts in order, then where the last ends (filled in, stripes() + 1 long)
+   */
+  void groupByStripe(int[] keys, int n, int[] order, int[] bounds) {
+    Arrays.fill(bounds, 0);
+    for (int i = 0; i < n; i++) {
+      bounds[stripeOf(keys[i]) + 1]++;
+    }
+    for (int s = 0; s < _locks.length; s++) {
+      bounds[s + 1] += bounds[s];
+    }
+
+    // Fill each group from its end, leaving bounds[s] where group s starts
+    for (int i = n - 1; i >= 0; i--) {
+      order[--bounds[stripeOf(keys[i]) + 1]] = i;
+    }
+    System.arraycopy(bounds, 1, bounds, 0, _locks.length);
+    bounds[_locks.length] = n;
+  }
+
+  /**
+   * @@param stripe stripe to take (a thread that holds it already takes it again)
+   */
+  private void take(int stripe) {
+    _locks[stripe].lock();
+    // The increment's acquire keeps the holder's changes after it
+    if (_locks[stripe].getHoldCount() == 1) { _versions.incrementAndGet(stripe); }
+  }
+
+  /**
+   * @@param stripe stripe to give back
+   */
+  private void release(int stripe) {
+    // ... and its release keeps them before it
+    if (_locks[stripe].getHoldCount() == 1) { _versions.incrementAndGet(stripe); }
+    _locks[stripe].unlock();
+  }
+
+  /**
+   * @@param key product or partner handle
+   */
+  void lock(int key) {
+    take(stripeOf(key));
+  }
+
+  /**
+   * @@param key product or partner handle
+   */
+  void unlock(int key) {
+    release(stripeOf(key));
+  }
+
+  /**
+   * Reads what a key's stripe guards without taking it: the read is accepted
+   * if the stripe was not held, nor taken, while it ran. Otherwise it is
+   * retried, and after a few attempts run holding the stripe, which only
+   * waits for the operation holding it then. Since a read may see changes
+   * half-made, it must not change anything, and its exceptions are only
+   * thrown if the read is accepted.
+   *
+   * @@param key product or partner handle
+   * @@param reader the read
+   * @@return the read's result, as of a single version of the stripe
+   */
+  <T> T read(int key, Supplier<T> reader) {
+    int stripe = stripeOf(key);
+    if (_locks[stripe].isHeldByCurrentThread()) {
+      return reader.get();
+    }
+
+    for (int i = 0; i < OPTIMISTIC_READS; i++) {
+      long version = _versions.get(stripe);
+      if ((version & 1) != 0) { // Held
+        Thread.onSpinWait();
+        continue;
+      }
+
+      T result;
+      try {
+        result = reader.get();
+      } catch (RuntimeException e) {
+        VarHandle.acquireFence();
+        if (_versions.get(stripe) == version) { throw e; }
+        continue; // The read saw a change half-made
+      }
+
+      VarHandle.acquireFence(); // Keep the read's loads before the check, as StampedLock.validate does
+      if (_versions.get(stripe) == version) { return result; }
+    }
+
+    take(stripe);
+    try {
+      return reader.get();
+    } finally {
+      release(stripe);
+    }
+  }
+
+  /**
+   * Locks the stripes of all the given keys, in ascending stripe order.
+   *
+   * @@param keys product or partner handles
+   * @@return the stripes taken, to be given back to unlockAll
+   */
+  int[] lockAll(int[] keys) {
+    int[] stripes = new int[keys.length];
+    int n = 0;
+
+    for (int key: keys) {
+      stripes[n++] = stripeOf(key);
+    }
+
+    Arrays.sort(stripes);
+
+    int distinct = 0;
+    for (int i = 0; i < n; i++) {
+      if (distinct == 0 || stripes[distinct - 1] != stripes[i]) {
+        stripes[distinct++] = stripes[i];
+      }
+    }
+    stripes = Arrays.copyOf(stripes, distinct);
+
+    for (int s: stripes) {
+      take(s);
+    }
+
+    return stripes;
+  }
+
+  /**
+   * @@param stripes stripes returned by lockAll
+   */
+  void unlockAll(int[] stripes) {
+    for (int i = stripes.length - 1; i >= 0; i--) {
+      release(stripes[i]);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package ggc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock with two modes, each shared by any number of threads and excluding
+ * the other: writes hold it together (the warehouse locks what each one
+ * touches), and so do reads that must not overlap any write (saving and
+ * loading the warehouse).
+ *
+ * Writes take it with a single compare-and-set while no read holds it or
+ * waits for it. Otherwise the modes take turns: a read that waits holds off
+ * writes that have not started yet, and writes that wait hold off reads
+ * that have not started yet. Once the reads holding the gate are done, the
+ * writes waiting by then take it before any other read. Threads that wait
+ * block on the gate's monitor.
+ */
+class ReadWriteGate {
+
+  /** Number of writes holding the gate if positive, minus the number of reads if negative */
+  private final AtomicInteger _holders = new AtomicInteger();
+
+  /** Number of reads waiting for the gate (guarded by the monitor, read without it) */
+  private volatile int _readsWaiting = 0;
+
+  /** Number of writes waiting for the gate (guarded by the monitor) */
+  private int _writesWaiting = 0;
+
+  /** Number of waiting writes to go before the waiting reads (guarded by the monitor) */
+  private int _writesTurn = 0;
+
+  /**
+   * Takes the gate for a write (must be followed by exitWrite).
+   */
+  void enterWrite() {
+    int holders = _holders.get();
+    if (holders >= 0 && _readsWaiting == 0 && _holders.compareAndSet(holders, holders + 1)) {
+      return;
+    }
+
+    synchronized (this) {
+      boolean interrupted = false;
+      _writesWaiting++;
+      for (;;) {
+        holders = _holders.get();
+        if (holders >= 0 && (_readsWaiting == 0 || _writesTurn > 0)) {
+          if (_holders.compareAndSet(holders, holders + 1)) { break; }
+        } else {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      }
+      _writesWaiting--;
+      if (_writesTurn > 0) { _writesTurn--; }
+      if (interrupted) { Thread.currentThread().interrupt(); }
+    }
+  }
+
+  /**
+   * Gives back the gate taken with enterWrite.
+   */
+  void exitWrite() {
+    // Reads count themselves as waiting before they look at the holders,
+    // so the last write out sees them (or they see it gone)
+    if (_holders.decrementAndGet() == 0 && _readsWaiting > 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Takes the gate for a read, once no write holds it (must be followed by exitRead).
+   */
+  void enterRead() {
+    synchronized (this) {
+      boolean interrupted = false;
+      _readsWaiting++;
+      for (;;) {
+        int holders = _holders.get();
+        if (holders == 0 ? _writesTurn == 0 : holders < 0 && _writesWaiting == 0) {
+          if (_holders.compareAndSet(holders, holders - 1)) { break; }
+        } else {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      }
+      _readsWaiting--;
+      if (interrupted) { Thread.currentThread().interrupt(); }
+    }
+  }
+
+  /**
+   * Gives back the gate taken with enterRead.
+   */
+  void exitRead() {
+    if (_holders.incrementAndGet() == 0) {
+      synchronized (this) {
+        _writesTurn = _writesWaiting;
+        notifyAll();
+      }
+    }
+  }
+}
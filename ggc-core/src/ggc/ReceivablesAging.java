@@ -0,0 +1,78 @@
+package ggc;
+
+import ggc.transactions.Money;
+
+/**
+ * Unpaid sales at a date, by payment period (see Sale.calculatePeriod):
+ * 1 while they may still be paid early (before their product's deadline
+ * window), 2 up to their deadline, 3 while late by no more than the window,
+ * and 4 after that. For each period, how many sales there are and their real
+ * value at the date.
+ */
+public class ReceivablesAging {
+
+  /** Date the sales were valued at */
+  private final int _date;
+  /** Number of unpaid sales in each period (index 0 unused) */
+  private final int[] _sales;
+  /** Real value of the unpaid sales in each period, in Money's fixed point (index 0 unused) */
+  private final long[] _values;
+
+  /**
+   * @@param date date the sales were valued at
+   * @@param sales number of unpaid sales in each period (1 to 4)
+   * @@param values real value of the unpaid sales in each period, in fixed point
+   */
+  ReceivablesAging(int date, int[] sales, long[] values) {
+    _date = date;
+    _sales = sales;
+    _values = values;
+  }
+
+  /**
+   * @@return date the sales were valued at
+   */
+  public int getDate() {
+    return _date;
+  }
+
+  /**
+   * @@param period payment period (1 to 4)
+   * @@return number of unpaid sales in the period
+   */
+  public int getSales(int period) {
+    return _sales[period];
+  }
+
+  /**
+   * @@param period payment period (1 to 4)
+   * @@return real value of the unpaid sales in the period
+   */
+  public double getValue(int period) {
+    return Money.toDouble(_values[period]);
+  }
+
+  /**
+   * @@return real value of all unpaid sales
+   */
+  public double getTotal() {
+    long total = 0;
+
+    for (long value: _values) {
+      total = Math.addExact(total, value);
+    }
+
+    return Money.toDouble(total);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder("receivables at " + _date + ":");
+
+    for (int period = 1; period < _sales.length; period++) {
+      text.append(" P").append(period).append(' ').append(_sales[period]).append('|').append(Math.round(getValue(period)));
+    }
+
+    return text.toString();
+  }
+}
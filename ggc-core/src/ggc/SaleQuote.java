@@ -0,0 +1,92 @@
+package ggc;
+
+import java.util.*;
+import ggc.exceptions.NotEnoughProductsException;
+import ggc.products.*;
+
+/**
+ * What a sale would do if made now (see WarehouseManager.requestQuoteSale):
+ * its price, the units it would craft, and the units it would take from
+ * existing batches; or, if it cannot be made, the shortfall attemptSale
+ * would report.
+ */
+public class SaleQuote {
+
+  /** Base value of the sale */
+  private final float _price;
+  /** Value the partner would pay if paying today */
+  private final float _value;
+  /** Units that would be crafted, by product, in crafting order */
+  private final Map<Product, Integer> _crafted;
+  /** Units that would be taken from existing batches, in the order they are taken */
+  private final Map<Batch, Integer> _consumed;
+  /** Why the sale cannot be made (null if it can) */
+  private final NotEnoughProductsException _shortfall;
+
+  /**
+   * @@param price base value of the sale
+   * @@param value value the partner would pay if paying today
+   * @@param crafted units that would be crafted, by product
+   * @@param consumed units that would be taken from existing batches
+   */
+  SaleQuote(float price, float value, Map<Product, Integer> crafted, Map<Batch, Integer> consumed) {
+    _price = price;
+    _value = value;
+    _crafted = Collections.unmodifiableMap(crafted);
+    _consumed = Collections.unmodifiableMap(consumed);
+    _shortfall = null;
+  }
+
+  /**
+   * @@param shortfall why the sale cannot be made
+   */
+  SaleQuote(NotEnoughProductsException shortfall) {
+    _price = 0;
+    _value = 0;
+    _crafted = Map.of();
+    _consumed = Map.of();
+    _shortfall = shortfall;
+  }
+
+  /**
+   * @@return whether the sale can be made
+   */
+  public boolean isPossible() {
+    return _shortfall == null;
+  }
+
+  /**
+   * @@return base value of the sale (0 if it cannot be made)
+   */
+  public float getPrice() {
+    return _price;
+  }
+
+  /**
+   * @@return value the partner would pay if paying today (0 if the sale cannot be made)
+   */
+  public float getValue() {
+    return _value;
+  }
+
+  /**
+   * @@return units that would be crafted, by product, in crafting order
+   */
+  public Map<Product, Integer> getCrafted() {
+    return _crafted;
+  }
+
+  /**
+   * @@return units that would be taken from existing batches, in the order they are taken
+   */
+  public Map<Batch, Integer> getConsumedBatches() {
+    return _consumed;
+  }
+
+  /**
+   * @@return the exception attemptSale would throw (null if the sale can be made)
+   */
+  public NotEnoughProductsException getShortfall() {
+    return _shortfall;
+  }
+}
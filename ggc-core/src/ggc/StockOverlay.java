@@ -0,0 +1,145 @@
+package ggc;
+
+import java.text.Collator;
+import java.util.*;
+import ggc.partners.Partner;
+import ggc.products.*;
+
+/**
+ * A view of product and batch stock with changes laid over it, for working
+ * out what an operation would do without doing it (see Warehouse.quoteSale).
+ * Only what the operation touches is recorded: everything else reads through
+ * to the warehouse.
+ *
+ * Consuming follows Warehouse.consumeProducts: the cheapest batch first and,
+ * between batches of the same price, the first in listing order. Existing
+ * batches are found from the top of their product's heap, skipping the ones
+ * the overlay has used up.
+ */
+class StockOverlay {
+
+  /** Product stock, where changed */
+  private final Map<Product, Integer> _stock = new HashMap<Product, Integer>();
+  /** Batch stock, where changed (0 once consumed) */
+  private final Map<Batch, Integer> _batchStock = new HashMap<Batch, Integer>();
+  /** Records of existing batches that would be used up */
+  private final Set<Integer> _usedUp = new HashSet<Integer>();
+  /** Batches that would be made, by product */
+  private final Map<Product, List<Batch>> _newBatches = new HashMap<Product, List<Batch>>();
+  /** Batches that would be made */
+  private final Set<Batch> _made = new HashSet<Batch>();
+  /** Units that would be taken from existing batches, in the order they are first taken */
+  private final Map<Batch, Integer> _consumed = new LinkedHashMap<Batch, Integer>();
+  /** Units that would be crafted, by product, in the order they are first crafted */
+  private final Map<Product, Integer> _crafted = new LinkedHashMap<Product, Integer>();
+  /** Orders partners as batch listings do */
+  private final Collator _collator = Collator.getInstance(Locale.getDefault());
+
+  /**
+   * @@param product a product
+   * @@return the product's stock, with the changes
+   */
+  int getStock(Product product) {
+    Integer stock = _stock.get(product);
+    return stock == null ? product.getStock() : stock;
+  }
+
+  /**
+   * @@param batch a batch
+   * @@return the batch's stock, with the changes
+   */
+  private int getStock(Batch batch) {
+    Integer stock = _batchStock.get(batch);
+    return stock == null ? batch.getStock() : stock;
+  }
+
+  /**
+   * @@param a a batch
+   * @@param b a batch of the same product and price
+   * @@return whether a comes before b in batch listings (see Batch.compareTo)
+   */
+  private boolean listedBefore(Batch a, Batch b) {
+    int partners = _collator.compare(a.getPartner().getId(), b.getPartner().getId());
+    if (partners != 0) {
+      return partners < 0;
+    }
+    return -Math.round(getStock(b) - getStock(a)) < 0;
+  }
+
+  /**
+   * @@param product a product
+   * @@return the product's cheapest batch with stock left, with the changes
+   */
+  private Batch getCheapestBatch(Product product) {
+    BatchHeap heap = product.getBatchHeap();
+    Batch cheapest = heap == null ? null : heap.first(record -> !_usedUp.contains(record));
+
+    for (Batch b: _newBatches.getOrDefault(product, List.of())) {
+      if (getStock(b) > 0 && (cheapest == null || b.getPrice() < cheapest.getPrice()
+          || (b.getPrice() == cheapest.getPrice() && listedBefore(b, cheapest)))) {
+        cheapest = b;
+      }
+    }
+
+    return cheapest;
+  }
+
+  /**
+   * Takes units of a product (which must have them), cheapest batches first.
+   *
+   * @@param product product to be consumed
+   * @@param quantity product's quantity to be consumed
+   * @@return price of all consumed products
+   */
+  float consumeProducts(Product product, int quantity) {
+    float price = 0;
+
+    _stock.put(product, getStock(product) - quantity);
+
+    while (quantity > 0) {
+      Batch batch = getCheapestBatch(product);
+      int stock = getStock(batch);
+      int taken = Math.min(stock, quantity);
+
+      price += taken * batch.getPrice();
+      quantity -= taken;
+      _batchStock.put(batch, stock - taken);
+
+      if (!_made.contains(batch)) {
+        _consumed.merge(batch, taken, Integer::sum);
+        if (taken == stock) { _usedUp.add(batch.getRecord()); }
+      }
+    }
+
+    return price;
+  }
+
+  /**
+   * Adds a crafted unit of a product.
+   *
+   * @@param product crafted product
+   * @@param partner partner associated with product
+   * @@param price unit price
+   */
+  void addCraftedUnit(Product product, Partner partner, float price) {
+    Batch batch = new Batch(product, partner, price, 1);
+    _newBatches.computeIfAbsent(product, p -> new ArrayList<Batch>()).add(batch);
+    _made.add(batch);
+    _stock.put(product, getStock(product) + 1);
+    _crafted.merge(product, 1, Integer::sum);
+  }
+
+  /**
+   * @@return units that would be taken from existing batches
+   */
+  Map<Batch, Integer> getConsumed() {
+    return _consumed;
+  }
+
+  /**
+   * @@return units that would be crafted, by product
+   */
+  Map<Product, Integer> getCrafted() {
+    return _crafted;
+  }
+}
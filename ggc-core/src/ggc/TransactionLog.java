@@ -0,0 +1,222 @@
+package ggc;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import ggc.transactions.*;
+
+/**
+ * Append-only list of all the transactions, indexed by id.
+ *
+ * Ids are reserved with an atomic counter, so appends do not lock. Entries
+ * live in chunks that double in size (1024, 2048, ...), so appending never
+ * copies existing entries and the chunk holding an id is found with a few
+ * bit operations. The next chunk is allocated before the current one fills up.
+ *
+ * An entry becomes visible (in size, get and iteration) once every entry
+ * before it has been stored, so readers never see gaps. An append whose
+ * transaction could not be created leaves a tombstone: a null entry, whose
+ * row in the columns is a paid acquisition of nothing.
+ *
+ * The numbers of the transactions (amounts, values, dates) are kept in the
+ * log's TransactionColumns, filled in as transactions are appended.
+ */
+class TransactionLog extends AbstractList<Transaction> implements RandomAccess, Serializable {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202205141830L;
+
+  /** log2 of the size of the first chunk */
+  private static final int FIRST_CHUNK_BITS = 10;
+  /** Number of chunks (enough for over two billion ids) */
+  private static final int CHUNKS = 31 - FIRST_CHUNK_BITS;
+  /** Busy-waits for earlier appends before yielding the processor */
+  private static final int PUBLISH_SPINS = 64;
+
+  /** Chunks of entries; chunk k holds ids from 1024 * (2^k - 1) on */
+  private transient AtomicReferenceArray<Transaction[]> _chunks;
+  /** Next id to be reserved */
+  private transient AtomicInteger _reserved;
+  /** Number of visible entries */
+  private transient AtomicInteger _size;
+  /** Numbers of the entries, by id */
+  private transient TransactionColumns _columns;
+
+  public TransactionLog() {
+    init();
+  }
+
+  /**
+   * @@param transactions transactions to start with, in id order
+   */
+  public TransactionLog(Collection<? extends Transaction> transactions) {
+    this();
+    for (Transaction t: transactions) {
+      append(id -> t);
+    }
+  }
+
+  private void init() {
+    _chunks = new AtomicReferenceArray<Transaction[]>(CHUNKS);
+    _reserved = new AtomicInteger();
+    _size = new AtomicInteger();
+    _columns = new TransactionColumns();
+    _chunks.set(0, new Transaction[1 << FIRST_CHUNK_BITS]);
+  }
+
+  /**
+   * @@return numbers of the transactions, by id (rows below size() are visible)
+   */
+  public TransactionColumns columns() {
+    return _columns;
+  }
+
+  /**
+   * @@param id transaction id
+   * @@return index of the chunk holding the id
+   */
+  private static int chunkOf(int id) {
+    return 31 - Integer.numberOfLeadingZeros((id >>> FIRST_CHUNK_BITS) + 1);
+  }
+
+  /**
+   * @@param chunk chunk index
+   * @@return first id held by the chunk
+   */
+  private static int chunkStart(int chunk) {
+    return ((1 << chunk) - 1) << FIRST_CHUNK_BITS;
+  }
+
+  /**
+   * @@param chunk chunk index
+   * @@return the chunk, allocated if no thread has done it yet
+   */
+  private Transaction[] chunk(int chunk) {
+    Transaction[] entries = _chunks.get(chunk);
+
+    if (entries == null) {
+      _chunks.compareAndSet(chunk, null, new Transaction[1 << (FIRST_CHUNK_BITS + chunk)]);
+      entries = _chunks.get(chunk);
+    }
+
+    return entries;
+  }
+
+  /**
+   * Reserves the next id, creates the transaction with it and appends it.
+   *
+   * @@param factory creates the transaction, given its id
+   * @@return the transaction
+   */
+  public <T extends Transaction> T append(IntFunction<T> factory) {
+    int id = _reserved.getAndIncrement();
+    int chunk = chunkOf(id);
+    int offset = id - chunkStart(chunk);
+    Transaction[] entries = chunk(chunk);
+
+    // Allocate the next chunk once this one is three quarters full
+    if (offset == (entries.length >>> 2) * 3 && chunk + 1 < CHUNKS) {
+      chunk(chunk + 1);
+    }
+
+    T transaction = null;
+    try {
+      transaction = factory.apply(id);
+      _columns.register(transaction);
+      entries[offset] = transaction;
+    } finally {
+      // Later appends wait for this id to be published, even if it failed
+      try {
+        if (entries[offset] == null) { _columns.retire(id); }
+      } finally {
+        publish(id);
+      }
+    }
+
+    return transaction;
+  }
+
+  /**
+   * Appends a tombstone (see append).
+   */
+  private void appendTombstone() {
+    int id = _reserved.getAndIncrement();
+    chunk(chunkOf(id));
+    _columns.retire(id);
+    publish(id);
+  }
+
+  /**
+   * Makes an id visible, once the appends that reserved earlier ids are.
+   * If they take long, their threads may not be running: let them run.
+   *
+   * @@param id transaction id (stored)
+   */
+  private void publish(int id) {
+    for (int spins = 0; !_size.compareAndSet(id, id + 1); spins++) {
+      if (spins < PUBLISH_SPINS) {
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * @@param id transaction id
+   * @@return the transaction with the given id (null for a tombstone)
+   */
+  @Override
+  public Transaction get(int id) {
+    if (id < 0 || id >= _size.get()) {
+      throw new IndexOutOfBoundsException(id);
+    }
+
+    int chunk = chunkOf(id);
+    return _chunks.get(chunk)[id - chunkStart(chunk)];
+  }
+
+  /**
+   * @@return number of visible transactions
+   */
+  @Override
+  public int size() {
+    return _size.get();
+  }
+
+  /**
+   * @@param out stream to write to
+   * @@throws IOException
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+
+    int size = size();
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeObject(get(i));
+    }
+  }
+
+  /**
+   * @@param in stream to read from
+   * @@throws IOException
+   * @@throws ClassNotFoundException
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    init();
+
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      Transaction t = (Transaction) in.readObject();
+      if (t != null) {
+        append(id -> t);
+      } else {
+        appendTombstone();
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package ggc;
+
+import java.util.*;
+
+/**
+ * Changes made by an operation that may still fail, recorded as the actions
+ * that undo them. Rolling back runs the actions in reverse order, leaving
+ * the warehouse as it was before the first recorded change. Changes that
+ * cannot be undone (such as reusing a destroyed batch's record) are put off
+ * until the operation commits.
+ */
+class UndoLog {
+
+  /** Actions that undo the recorded changes, oldest first */
+  private final ArrayList<Runnable> _actions = new ArrayList<Runnable>();
+  /** Actions put off until the operation commits, oldest first */
+  private final ArrayList<Runnable> _onCommit = new ArrayList<Runnable>();
+
+  /**
+   * @@param undo action that undoes a change just made
+   */
+  void record(Runnable undo) {
+    _actions.add(undo);
+  }
+
+  /**
+   * @@param action action to be run if the operation commits
+   */
+  void onCommit(Runnable action) {
+    _onCommit.add(action);
+  }
+
+  /**
+   * Keeps the recorded changes, running the actions put off until now.
+   */
+  void commit() {
+    for (Runnable action: _onCommit) {
+      action.run();
+    }
+    _onCommit.clear();
+    _actions.clear();
+  }
+
+  /**
+   * Undoes the recorded changes, newest first, and forgets them (and the
+   * actions put off until the operation commits).
+   */
+  void rollback() {
+    for (int i = _actions.size() - 1; i >= 0; i--) {
+      _actions.get(i).run();
+    }
+    _actions.clear();
+    _onCommit.clear();
+  }
+}
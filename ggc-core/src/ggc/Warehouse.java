@@ -2,6 +2,12 @@ package ggc;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import ggc.events.*;
 import ggc.exceptions.*;
 import ggc.partners.*;
 import ggc.products.*;
@@ -9,28 +15,311 @@ import ggc.transactions.*;
 
 /**
  * Class Warehouse implements a warehouse.
+ *
+ * A warehouse may be used by several threads at once. Each product's stock
+ * and batches are guarded by the product's lock stripe, and each partner's
+ * batches, transactions and mailbox by the partner's stripe. Operations take
+ * product stripes first (all at once, in stripe order, for a whole recipe),
+ * then at most one partner stripe at a time, then the ledger lock, which
+ * guards the balance and counters. Operations on the whole warehouse (date
+ * changes, imports, saving) hold the state lock exclusively; all others
+ * share it. Transactions are appended to a TransactionLog, which needs no lock.
  */
 public class Warehouse implements Serializable {
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202109192006L;
 
-  /** Warehouse's current available balance */
+  /** Warehouse's current available balance (in Money's fixed point) */
+  private volatile long _balance = 0;
+  /** Available balance, as saved before it was kept in fixed point */
   private double _availableBalance = 0;
   /** Warehouse's current date */
-  private int _date = 0;
-  /** Set of all the products the warehouse knows */
-  private Set<Product> _products = new TreeSet<Product>();
-  /** Map matching products with their id */
-  private Map<String, Product> _productLookup = new TreeMap<String, Product>(String.CASE_INSENSITIVE_ORDER);
-  /** Map matching partners with their id */
-  private Map<String, Partner> _partnerLookup = new TreeMap<String, Partner>(String.CASE_INSENSITIVE_ORDER);
-  /** Set of all the partners the warehouse has */
-  private Set<Partner> _partners = new TreeSet<Partner>();
-  /** List of all the transactions made in the warehouse */
-  private ArrayList<Transaction> _transactions = new ArrayList<Transaction>();
+  private volatile int _date = 0;
+  /** All the products the warehouse knows, in listing order (lookups use _productHandles) */
+  private Set<Product> _products = new ConcurrentSkipListSet<Product>();
+  /** Products by handle, with their stock and maximum price */
+  private ProductColumns _productColumns = new ProductColumns();
+  /** Products' handles, by id (ignoring case) */
+  private transient IdTable _productHandles;
+  /** Partners by handle, with their points and status tier */
+  private PartnerColumns _partnerColumns = new PartnerColumns();
+  /** Partners' handles, by id (ignoring case) */
+  private transient IdTable _partnerHandles;
+  /** Every batch in stock, as a record (products and partners keep record numbers) */
+  private BatchStore _batchStore = new BatchStore(_productColumns, _partnerColumns);
+  /** All the partners the warehouse has, in listing order (lookups use _partnerHandles) */
+  private Set<Partner> _partners = new ConcurrentSkipListSet<Partner>();
+  /** List of all the transactions made in the warehouse (a TransactionLog) */
+  private List<Transaction> _transactions = new TransactionLog();
   /** Warehouse's notification station */
   private NotificationStation _notStation = new NotificationStation();
+  /** Number of batches in stock */
+  private volatile int _batchCount = 0;
+  /** Number of unpaid sales */
+  private volatile int _unpaidSales = 0;
+  /** Real value of all unpaid sales at the current date, in fixed point (kept up to date, unlike each sale's own real value) */
+  private volatile long _unpaidValue = 0;
+  /** Value of unpaid sales, as saved before it was kept in fixed point */
+  private double _receivables = 0;
+  /** Fraction bits of the fixed point amounts are kept in (see Money) */
+  private int _moneyBits = Money.FRACTION_BITS;
+  /** Lines of an import file in each flight recorder event */
+  private static final int IMPORT_CHUNK_LINES = 1000;
+  /** Number of lock stripes for products and for partners */
+  private static final int LOCK_STRIPES = 64;
+
+  /** Shared by all operations, held exclusively by those on the whole warehouse */
+  private transient ReadWriteLock _stateLock;
+  /** Locks guarding products' stock and batches */
+  private transient LockStripes _productLocks;
+  /** Locks guarding partners' batches, transactions and mailboxes */
+  private transient LockStripes _partnerLocks;
+  /** Guards the balance and counters */
+  private transient Object _ledgerLock;
+  /** Time each date advance may spend compacting batches, in microseconds (0 for none) */
+  private transient volatile long _compactionBudget;
+  /** Handle of the product the next compaction pass starts from */
+  private transient volatile int _compactionCursor;
+
+  /** Work done by the current thread's operation (for flight recorder events) */
+  private static final ThreadLocal<OperationStats> STATS = ThreadLocal.withInitial(OperationStats::new);
+
+  /** Counters of the work done by an operation */
+  private static class OperationStats {
+    /** Number of batches consumed */
+    long batchesTouched = 0;
+    /** Deepest crafting level reached by the current sale */
+    int craftDepth = 0;
+  }
+
+  public Warehouse() {
+    initLocks();
+    indexHandles();
+    _compactionBudget = Long.getLong("compactionBudget", 0);
+  }
+
+  /**
+   * Creates the locks, which are not serialized.
+   */
+  private void initLocks() {
+    _stateLock = new ReentrantReadWriteLock();
+    _productLocks = new LockStripes(LOCK_STRIPES);
+    _partnerLocks = new LockStripes(LOCK_STRIPES);
+    _ledgerLock = new Object();
+  }
+
+  /**
+   * Maps ids to handles, which are not serialized.
+   */
+  private void indexHandles() {
+    _productHandles = new IdTable();
+    _partnerHandles = new IdTable();
+
+    for (int h = 0; h < _productColumns.size(); h++) {
+      _productHandles.put(_productColumns.get(h).getId(), h);
+    }
+    for (int h = 0; h < _partnerColumns.size(); h++) {
+      _partnerHandles.put(_partnerColumns.get(h).getId(), h);
+    }
+  }
+
+  /**
+   * @@param out stream to write to
+   * @@throws IOException
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    _stateLock.writeLock().lock();
+    try {
+      out.defaultWriteObject();
+    } finally {
+      _stateLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @@param in stream to read from
+   * @@throws IOException
+   * @@throws ClassNotFoundException
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    initLocks();
+
+    // States saved before the warehouse was thread-safe hold tree sets and maps
+    if (!(_products instanceof ConcurrentSkipListSet)) {
+      _products = new ConcurrentSkipListSet<Product>(_products);
+      _partners = new ConcurrentSkipListSet<Partner>(_partners);
+    }
+
+    // States saved before handles keep stock, prices and points in the entities
+    if (_productColumns == null) {
+      _productColumns = new ProductColumns();
+      _partnerColumns = new PartnerColumns();
+      for (Product p: _products) { _productColumns.register(p); }
+      for (Partner p: _partners) { _partnerColumns.register(p); }
+    }
+
+    // States saved before tiers were shared hold a status object in each partner
+    for (Partner p: _partners) { p.clearSavedStatus(); }
+    indexHandles();
+    _compactionBudget = Long.getLong("compactionBudget", 0);
+
+    // States saved before the batch store hold batches in the products and partners
+    if (_batchStore == null) {
+      _batchStore = new BatchStore(_productColumns, _partnerColumns);
+      migrateBatches();
+    }
+    indexBatches();
+
+    // States saved before the transaction log hold an array list
+    if (!(_transactions instanceof TransactionLog)) {
+      _transactions = new TransactionLog(_transactions);
+    }
+
+    // States saved before the units were saved count units of 2^-28
+    if (_moneyBits == 0) { _moneyBits = 28; }
+    if (_moneyBits != Money.FRACTION_BITS) {
+      _balance = Money.rescale(_balance, _moneyBits);
+      _unpaidValue = Money.rescale(_unpaidValue, _moneyBits);
+      _moneyBits = Money.FRACTION_BITS;
+    }
+
+    // States saved before fixed point money hold the ledger in doubles
+    _balance = Math.addExact(_balance, Money.of(_availableBalance));
+    _unpaidValue = Math.addExact(_unpaidValue, Money.of(_receivables));
+    _availableBalance = 0;
+    _receivables = 0;
+
+    // States saved before the metrics were kept hold no counters (nor a notification backlog)
+    if (!_notStation.hasBacklog()) {
+      _notStation.restoreBacklog();
+      restoreCounters();
+    }
+  }
+
+  /**
+   * Counts the batches in stock and the unpaid sales, and values them.
+   */
+  private void restoreCounters() {
+    TransactionColumns columns = ((TransactionLog) _transactions).columns();
+    int unpaidSales = 0;
+
+    for (int id = 0; id < _transactions.size(); id++) {
+      if (!columns.isPaid(id)) { unpaidSales++; }
+    }
+
+    _batchCount = _batchStore.size();
+    _unpaidSales = unpaidSales;
+    revalueReceivables();
+  }
+
+  /**
+   * Moves the batches of a state saved before the batch store into it. Each
+   * product's heap keeps the records in the order its queue kept the
+   * batches (partners' batches are put in order by indexBatches).
+   */
+  private void migrateBatches() {
+    for (int h = 0; h < _productColumns.size(); h++) {
+      Product p = _productColumns.get(h);
+      int[] heap = new int[p.getSavedBatches().size()];
+      int i = 0;
+      for (Batch b: p.getSavedBatches()) {
+        heap[i++] = _batchStore.allocate(b.getProduct(), b.getPartner(), b.getPrice(), b.getStock());
+      }
+      p.setBatchHeap(new BatchHeap(_batchStore, heap));
+    }
+  }
+
+  /**
+   * Puts back what is not saved: each batch's position in its product's
+   * heap, and each partner's batches in listing order.
+   */
+  private void indexBatches() {
+    for (int h = 0; h < _productColumns.size(); h++) {
+      BatchHeap heap = _productColumns.get(h).getBatchHeap();
+      if (heap != null) { heap.reindex(); }
+    }
+
+    BatchTree[] trees = new BatchTree[_partnerColumns.size()];
+    for (int h = 0; h < trees.length; h++) {
+      trees[h] = new BatchTree(_batchStore, _partnerColumns.get(h));
+      _partnerColumns.get(h).setBatchTree(trees[h]);
+    }
+    for (int record = 0; record < _batchStore.capacity(); record++) {
+      if (_batchStore.isLive(record)) {
+        trees[_batchStore.getPartnerHandle(record)].add(record);
+      }
+    }
+  }
+
+  /**
+   * @@param product product whose recipe is to be locked
+   * @@return stripes taken, for unlockRecipe
+   */
+  private int[] lockRecipe(Product product) {
+    BitSet handles = new BitSet();
+    addRecipeClosure(product.getHandle(), handles);
+    return _productLocks.lockAll(handles.stream().toArray());
+  }
+
+  /**
+   * @@param product handle of the product whose recipe is to be added
+   * @@param handles handles of the product and of everything it is made of
+   */
+  private void addRecipeClosure(int product, BitSet handles) {
+    if (!handles.get(product)) {
+      handles.set(product);
+      Recipe recipe = _productColumns.get(product).getRecipe();
+      if (recipe != null) {
+        for (int h: recipe.getHandles()) {
+          addRecipeClosure(h, handles);
+        }
+      }
+    }
+  }
+
+  /**
+   * @@param stripes stripes returned by lockRecipe
+   */
+  private void unlockRecipe(int[] stripes) {
+    _productLocks.unlockAll(stripes);
+  }
+
+  /**
+   * @@param balance change of the available balance (in fixed point)
+   * @@param unpaidSales change of the number of unpaid sales
+   * @@param receivables change of the value of unpaid sales (in fixed point)
+   */
+  private void updateLedger(long balance, int unpaidSales, long receivables) {
+    synchronized (_ledgerLock) {
+      // Nothing changes if either total would overflow
+      long newBalance = Math.addExact(_balance, balance);
+      long newUnpaidValue = Math.addExact(_unpaidValue, receivables);
+      _balance = newBalance;
+      _unpaidSales += unpaidSales;
+      _unpaidValue = newUnpaidValue;
+    }
+  }
+
+  /**
+   * @@param batches change of the number of batches
+   */
+  private void updateBatchCount(int batches) {
+    synchronized (_ledgerLock) {
+      _batchCount += batches;
+    }
+  }
+
+  /**
+   * Gives the next transaction id to a new transaction and registers it.
+   *
+   * @@param factory creates the transaction, given its id
+   * @@return the transaction
+   */
+  private <T extends Transaction> T registerTransaction(IntFunction<T> factory) {
+    return ((TransactionLog) _transactions).append(factory);
+  }
 
   // Getters
 
@@ -45,49 +334,297 @@ public class Warehouse implements Serializable {
    * @@return warehouse's available balance
    */
   public double getAvailableBalance() {
-    return _availableBalance;
+    return Money.toDouble(_balance);
   }
 
   /**
    * @@return warehouse's contabilistic balance
    */
   public double getContabilisticBalance() {
-    double contabilisticBalance = _availableBalance;
-
-    for (Transaction t: _transactions) {
-      if (!t.paid()) {
-        t.updateRealValue(_date);
-        contabilisticBalance += t.getRealValue();
+    _stateLock.readLock().lock();
+    try {
+      long contabilisticBalance = _balance;
+      TransactionColumns columns = ((TransactionLog) _transactions).columns();
+      Valuation valuation = valuation();
+      int[] partners = new int[0];
+      int[] order = new int[0];
+      int[] bounds = new int[_partnerLocks.stripes() + 1];
+
+      // Sales are valued in blocks, without locking, and their values stored
+      // under their partners' locks, taking each stripe once per block
+      while (valuation.next()) {
+        int n = valuation.size();
+        if (partners.length < n) {
+          partners = new int[n];
+          order = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+          partners[i] = valuation.partner(i);
+        }
+        _partnerLocks.groupByStripe(partners, n, order, bounds);
+
+        for (int s = 0; s + 1 < bounds.length; s++) {
+          if (bounds[s] == bounds[s + 1]) { continue; }
+
+          int key = partners[order[bounds[s]]]; // Any key in the stripe
+          _partnerLocks.lock(key);
+          try {
+            for (int k = bounds[s]; k < bounds[s + 1]; k++) {
+              int i = order[k];
+              int id = valuation.id(i);
+              if (!columns.isPaid(id)) {
+                // A payment since may have changed the partner's tier
+                float value = _partnerColumns.getTier(partners[i]) == valuation.tier(i) ? valuation.value(i) : _transactions.get(id).calculateRealValue(_date);
+                columns.setRealValue(id, value);
+                contabilisticBalance = Math.addExact(contabilisticBalance, Money.of(value));
+              }
+            }
+          } finally {
+            _partnerLocks.unlock(key);
+          }
+        }
       }
-    }
 
-    return contabilisticBalance;
+      return Money.toDouble(contabilisticBalance);
+    } finally {
+      _stateLock.readLock().unlock();
+    }
   }
 
   public int getTotalTransactions() {
     return _transactions.size();
   }
 
+  /**
+   * @@return number of registered products
+   */
+  public int getProductCount() {
+    return _productColumns.size();
+  }
+
+  /**
+   * @@return number of registered partners
+   */
+  public int getPartnerCount() {
+    return _partnerColumns.size();
+  }
+
+  /**
+   * @@return number of batches in stock
+   */
+  public int getBatchCount() {
+    return _batchCount;
+  }
+
+  /**
+   * @@return number of unpaid sales
+   */
+  public int getUnpaidSaleCount() {
+    return _unpaidSales;
+  }
+
+  /**
+   * @@return real value of all unpaid sales at the current date
+   */
+  public double getReceivables() {
+    return Money.toDouble(_unpaidValue);
+  }
+
+  /**
+   * @@return notifications not yet read by partners, by delivery method
+   */
+  public Map<String, Long> getNotificationBacklog() {
+    return _notStation.getBacklog();
+  }
+
+  /**
+   * @@return a valuation of the unpaid sales at the current date
+   */
+  private Valuation valuation() {
+    return new Valuation(((TransactionLog) _transactions).columns(), _productColumns, _partnerColumns, _transactions.size(), _date);
+  }
+
+  /**
+   * Recomputes the real value of all unpaid sales (after a date change).
+   */
+  private void revalueReceivables() {
+    long receivables = 0;
+    Valuation valuation = valuation();
+
+    while (valuation.next()) {
+      for (int i = 0; i < valuation.size(); i++) {
+        receivables = Math.addExact(receivables, Money.of(valuation.value(i)));
+      }
+    }
+
+    synchronized (_ledgerLock) {
+      _unpaidValue = receivables;
+    }
+  }
+
+  /**
+   * Values the unpaid sales at the current date, by payment period, without
+   * storing their values. Sales paid while the report is made may or may not
+   * be left out of it.
+   *
+   * @@return unpaid sales and their value, by payment period
+   */
+  public ReceivablesAging getReceivablesAging() {
+    int[] sales = new int[5];
+    long[] values = new long[5];
+
+    _stateLock.readLock().lock();
+    try {
+      Valuation valuation = valuation();
+
+      while (valuation.next()) {
+        for (int i = 0; i < valuation.size(); i++) {
+          sales[valuation.period(i)]++;
+          values[valuation.period(i)] = Math.addExact(values[valuation.period(i)], Money.of(valuation.value(i)));
+        }
+      }
+
+      return new ReceivablesAging(_date, sales, values);
+    } finally {
+      _stateLock.readLock().unlock();
+    }
+  }
+
   /**
    * @@param days number of days to advance
    * @@throws NoSuchDateException
    */
   public void advanceDate(int days) throws NoSuchDateException {
-    if (days > 0)
-      _date += days;
+    if (days > 0) {
+      DateAdvanceEvent event = new DateAdvanceEvent();
+      event.begin();
+
+      _stateLock.writeLock().lock();
+      try {
+        _date += days;
+        revalueReceivables();
+      } finally {
+        _stateLock.writeLock().unlock();
+      }
+
+      if (event.shouldCommit()) {
+        event.days = days;
+        event.date = _date;
+        event.commit();
+      }
+
+      if (_compactionBudget > 0) {
+        compactBatches(_compactionBudget * 1000);
+      }
+    }
     else throw new NoSuchDateException(days);
   }
 
+  /**
+   * @@return time each date advance may spend compacting batches, in microseconds (0 for none)
+   */
+  public long getCompactionBudget() {
+    return _compactionBudget;
+  }
+
+  /**
+   * @@param micros time each date advance may spend compacting batches, in microseconds (0 for none)
+   */
+  public void setCompactionBudget(long micros) {
+    _compactionBudget = Math.max(0, micros);
+  }
+
+  /**
+   * Merges batches that share product, partner and price into one, with
+   * their total stock. Total stock and value are unchanged; there are just
+   * fewer batches to list and to search for the cheapest. Products are
+   * visited in turn, each pass starting where the last one stopped, until
+   * all are done or the budget runs out (checked after each product).
+   *
+   * @@param budget time the pass may take, in nanoseconds (0 for no limit)
+   * @@return how many batches were merged and how long it took
+   */
+  public CompactionResult compactBatches(long budget) {
+    CompactionEvent event = new CompactionEvent();
+    event.begin();
+    long start = System.nanoTime();
+    int merged = 0;
+    int examined = 0;
+
+    _stateLock.readLock().lock();
+    try {
+      int products = _productColumns.size();
+      int handle = _compactionCursor;
+      while (examined < products && (budget <= 0 || examined == 0 || System.nanoTime() - start < budget)) {
+        handle = handle < products ? handle : 0;
+        merged += compactBatches(_productColumns.get(handle));
+        examined++;
+        handle++;
+      }
+      _compactionCursor = handle;
+
+      CompactionResult result = new CompactionResult(merged, examined, System.nanoTime() - start, examined == products);
+      if (event.shouldCommit()) {
+        event.merged = merged;
+        event.products = examined;
+        event.complete = result.isComplete();
+        event.commit();
+      }
+
+      return result;
+    } finally {
+      _stateLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @@param product product whose batches are to be merged
+   * @@return number of batches merged into others
+   */
+  private int compactBatches(Product product) {
+    int merged = 0;
+
+    _productLocks.lock(product.getHandle());
+    try {
+      BatchHeap heap = product.getBatchHeap();
+      if (heap == null || heap.size() < 2) {
+        return 0;
+      }
+
+      // The first batch (in heap order) of each partner and price takes in the stock of the others
+      Map<Long, Integer> kept = new HashMap<Long, Integer>();
+      Map<Integer, Integer> added = new LinkedHashMap<Integer, Integer>();
+      for (int record: heap.toArray()) {
+        long key = (long) _batchStore.getPartnerHandle(record) << 32 | Float.floatToIntBits(_batchStore.getPrice(record)) & 0xffffffffL;
+        Integer into = kept.putIfAbsent(key, record);
+        if (into != null) {
+          Batch batch = _batchStore.view(record);
+          destroyBatch(batch, null);
+          added.merge(into, batch.getStock(), Integer::sum);
+          merged++;
+        }
+      }
+      for (Map.Entry<Integer, Integer> e: added.entrySet()) {
+        addBatchStock(_batchStore.view(e.getKey()), e.getValue());
+      }
+    } finally {
+      _productLocks.unlock(product.getHandle());
+    }
+
+    return merged;
+  }
+
   /**
    * @@param id product's id
    * @@return product
    * @@throws NoSuchProductException
    */
   public Product lookupProduct(String id) throws NoSuchProductException {
-    if (!_productLookup.containsKey(id)) {
+    int handle = _productHandles.get(id);
+    if (handle < 0) {
       throw new NoSuchProductException(id);
     }
-    return _productLookup.get(id);
+    return _productColumns.get(handle);
   }
 
   /**
@@ -96,10 +633,11 @@ public class Warehouse implements Serializable {
    * @@throws NoSuchProductException
    */
   public Partner lookupPartner(String id) throws NoSuchPartnerException {
-    if (!_partnerLookup.containsKey(id)) {
+    int handle = _partnerHandles.get(id);
+    if (handle < 0) {
       throw new NoSuchPartnerException(id);
     }
-    return _partnerLookup.get(id);
+    return _partnerColumns.get(handle);
   }
 
   /**
@@ -111,9 +649,14 @@ public class Warehouse implements Serializable {
     ArrayList<String> stringList = new ArrayList<String>();
     Partner partner = lookupPartner(id);
 
-    stringList.add(partner.toString());
-    for (Notification n: listPartnerNotificationsByMethod(partner, "")) {
-      stringList.add(n.toString());
+    _partnerLocks.lock(partner.getHandle());
+    try {
+      stringList.add(partner.toString());
+      for (Notification n: listPartnerNotificationsByMethod(partner, "")) {
+        stringList.add(n.toString());
+      }
+    } finally {
+      _partnerLocks.unlock(partner.getHandle());
     }
 
     return stringList;
@@ -151,14 +694,14 @@ public class Warehouse implements Serializable {
   }
 
   /**
+   * The partner keeps its batches in listing order, and the listing reads
+   * them as they are when it is made, without locking.
+   *
    * @@param partner partner whose batches are to be listed
-   * @@return sorted list of partner's batches
+   * @@return sorted list of partner's batches (by product, price and stock)
    */
   public List<Batch> listBatchesByPartner(Partner partner) {
-    ArrayList<Batch> batchList = new ArrayList<Batch>(partner.getBatches());
-    batchList.sort(null);
-
-    return batchList;
+    return partner.getBatches();
   }
 
   /**
@@ -175,10 +718,35 @@ public class Warehouse implements Serializable {
    * @@return sorted list of batches
    */
   public List<Batch> listBatchesByProduct(Product product) {
-    ArrayList<Batch> batchList = new ArrayList<Batch>(product.getBatches());
-    batchList.sort(null);
+    return readProduct(product, () -> {
+      BatchHeap heap = product.getBatchHeap();
 
-    return batchList;
+      return heap == null ? new ArrayList<Batch>() : heap.toSortedList();
+    });
+  }
+
+  /**
+   * Reads what a product's lock guards (its stock, prices and batches)
+   * without taking it, as LockStripes.read does.
+   *
+   * @@param product product to be read
+   * @@param reader the read, which must not change anything
+   * @@return the read's result, as of a single version of the product
+   */
+  public <T> T readProduct(Product product, Supplier<T> reader) {
+    return _productLocks.read(product.getHandle(), reader);
+  }
+
+  /**
+   * Reads what a partner's lock guards (its status, transactions and
+   * batches) without taking it, as LockStripes.read does.
+   *
+   * @@param partner partner to be read
+   * @@param reader the read, which must not change anything
+   * @@return the read's result, as of a single version of the partner
+   */
+  public <T> T readPartner(Partner partner, Supplier<T> reader) {
+    return _partnerLocks.read(partner.getHandle(), reader);
   }
 
 
@@ -225,17 +793,39 @@ public class Warehouse implements Serializable {
    * @@throws DuplicatePartnerException
    */
   public void registerNewPartner(String id, String name, String address) throws DuplicatePartnerException {
-    try {
-      lookupPartner(id);
-    } catch (NoSuchPartnerException e) {
+    synchronized (_partnerColumns) {
+      if (_partnerHandles.get(id) >= 0) {
+        throw new DuplicatePartnerException(id);
+      }
+
       Partner newPartner = new Partner(id, name, address);
-      _partners.add(newPartner);
-      _partnerLookup.put(id, newPartner);
+      _partnerColumns.register(newPartner);
       _notStation.addMailbox(newPartner.getMailbox());
-      return;
+      _partners.add(newPartner);
+      _partnerHandles.put(id, newPartner.getHandle());
     }
+  }
+
+  /**
+   * Finds a product or, if there is none with the id, registers the one made.
+   *
+   * @@param id product's id
+   * @@param factory makes the product, if there is none
+   * @@return the product
+   */
+  private Product lookupOrRegisterProduct(String id, Supplier<Product> factory) {
+    synchronized (_productColumns) {
+      int handle = _productHandles.get(id);
+      if (handle >= 0) {
+        return _productColumns.get(handle);
+      }
 
-    throw new DuplicatePartnerException(id);
+      Product product = factory.get();
+      _productColumns.register(product);
+      _products.add(product);
+      _productHandles.put(id, product.getHandle());
+      return product;
+    }
   }
 
   /**
@@ -246,18 +836,15 @@ public class Warehouse implements Serializable {
    */
 
   public ProductSimple registerProductSimple(String id, float price, int stock) {
-    ProductSimple product = null;
+    ProductSimple product = (ProductSimple) lookupOrRegisterProduct(id, () -> new ProductSimple(id));
 
+    _productLocks.lock(product.getHandle());
     try {
-      product = (ProductSimple) lookupProduct(id);
-    } catch (NoSuchProductException e) {
-      product = new ProductSimple(id);
-      _productLookup.put(id, product);
-      _products.add(product);
-    }
-
-    if (product.getMaxPrice() < price) {
-      product.setMaxPrice(price);
+      if (product.getMaxPrice() < price) {
+        product.setMaxPrice(price);
+      }
+    } finally {
+      _productLocks.unlock(product.getHandle());
     }
 
     return product;
@@ -272,18 +859,15 @@ public class Warehouse implements Serializable {
    * @@return registered product
    */
   public ProductDerivative registerProductDerivative(String id, Recipe recipe, float multiplier, float price, int stock) {
-    ProductDerivative product;
+    ProductDerivative product = (ProductDerivative) lookupOrRegisterProduct(id, () -> new ProductDerivative(id, recipe, multiplier));
 
+    _productLocks.lock(product.getHandle());
     try {
-      product = (ProductDerivative) lookupProduct(id);
-    } catch (NoSuchProductException e) {
-      product = new ProductDerivative(id, recipe, multiplier);
-      _productLookup.put(id, product);
-      _products.add(product);
-    }
-
-    if (product.getMaxPrice() < price) {
-      product.setMaxPrice(price);
+      if (product.getMaxPrice() < price) {
+        product.setMaxPrice(price);
+      }
+    } finally {
+      _productLocks.unlock(product.getHandle());
     }
 
     return product;
@@ -324,18 +908,15 @@ public class Warehouse implements Serializable {
    * @@return selected product's cheapest batch
    */
   public Batch getCheapestBatch(Product product) {
-    List<Batch> batchesByProduct = listBatchesByProduct(product);
-    Batch cheapestBatch = null;
-    float cheapestPrice = -1;
+    _productLocks.lock(product.getHandle());
+    try {
+      BatchHeap heap = product.getBatchHeap();
+      int record = heap == null ? -1 : heap.peek();
 
-    for (Batch b : batchesByProduct) {
-      if ((cheapestPrice == -1 || b.getPrice() < cheapestPrice) && b != null) {
-        cheapestBatch = b;
-        cheapestPrice = b.getPrice();
-      }
+      return record < 0 ? null : _batchStore.view(record);
+    } finally {
+      _productLocks.unlock(product.getHandle());
     }
-
-    return cheapestBatch;
   }
 
   /**
@@ -351,28 +932,113 @@ public class Warehouse implements Serializable {
    * @@return price of all consumed products
    */
   public float consumeProducts(Product product, int quantity) { // Returns the price of all of the products summed together
+    return consumeProducts(product, quantity, null);
+  }
+
+  /**
+   * @@param product product to be consumed
+   * @@param quantity product's quantity to be consumed
+   * @@param undo where to record the changes (null if they are not to be undone)
+   * @@return price of all consumed products
+   */
+  private float consumeProducts(Product product, int quantity, UndoLog undo) {
     float price = 0;
     Batch currentBatch;
-    product.addStock(-quantity);
-
-    while (quantity > 0) {
-      currentBatch = getCheapestBatch(product);
+    OperationStats stats = STATS.get();
 
-      if (currentBatch.getStock() <= quantity) {
-        price += currentBatch.getStock() * currentBatch.getPrice();
-        quantity -= currentBatch.getStock();
-        currentBatch.destroy();
-      } else {
-        price += quantity * currentBatch.getPrice();
-        currentBatch.addStock(-quantity);
-        quantity = 0;
+    _productLocks.lock(product.getHandle());
+    try {
+      product.addStock(-quantity);
+      if (undo != null) {
+        int consumed = quantity;
+        undo.record(() -> product.addStock(consumed));
       }
 
+      while (quantity > 0) {
+        currentBatch = getCheapestBatch(product);
+        stats.batchesTouched++;
+
+        if (currentBatch.getStock() <= quantity) {
+          price += currentBatch.getStock() * currentBatch.getPrice();
+          quantity -= currentBatch.getStock();
+          destroyBatch(currentBatch, undo);
+          if (undo != null) {
+            Batch destroyed = currentBatch;
+            undo.record(() -> restoreBatch(destroyed));
+          }
+        } else {
+          price += quantity * currentBatch.getPrice();
+          addBatchStock(currentBatch, -quantity);
+          if (undo != null) {
+            Batch consumed = currentBatch;
+            int units = quantity;
+            undo.record(() -> addBatchStock(consumed, units));
+          }
+          quantity = 0;
+        }
+
+      }
+    } finally {
+      _productLocks.unlock(product.getHandle());
     }
 
     return price;
   }
 
+  /**
+   * @@param batch batch whose stock changes (its product's lock is held)
+   * @@param stock change of the batch's stock, which must leave some
+   */
+  private void addBatchStock(Batch batch, int stock) {
+    int partner = batch.getPartner().getHandle();
+
+    _partnerLocks.lock(partner);
+    try {
+      batch.addStock(stock);
+    } finally {
+      _partnerLocks.unlock(partner);
+    }
+  }
+
+  /**
+   * @@param batch batch to be removed from its product and partner
+   * @@param undo where the change is recorded (null if it is not to be undone)
+   */
+  private void destroyBatch(Batch batch, UndoLog undo) {
+    Partner partner = batch.getPartner();
+
+    _partnerLocks.lock(partner.getHandle());
+    try {
+      partner.removeBatch(batch);
+    } finally {
+      _partnerLocks.unlock(partner.getHandle());
+    }
+    batch.getProduct().removeBatch(batch);
+    // A batch that may be restored keeps its record until the operation commits
+    if (undo == null) {
+      _batchStore.free(batch.getRecord());
+    } else {
+      undo.onCommit(() -> _batchStore.free(batch.getRecord()));
+    }
+    updateBatchCount(-1);
+  }
+
+  /**
+   * @@param batch destroyed batch to be put back in its product and partner
+   */
+  private void restoreBatch(Batch batch) {
+    int partner = batch.getPartner().getHandle();
+
+    _partnerLocks.lock(partner);
+    try {
+      batch.getPartner().addBatch(batch);
+    } finally {
+      _partnerLocks.unlock(partner);
+    }
+    batch.getProduct().addBatch(batch);
+    updateBatchCount(1);
+  }
+
   /**
    * @@param product product to be looked up
    * @@param partner selected partner
@@ -396,23 +1062,198 @@ public class Warehouse implements Serializable {
    * @@param quantity quantity to be crafted
    */
 
-  public void craftProduct(ProductDerivative product, Partner partner, int quantity) {
-    Recipe recipe = product.getRecipe();
+  public void craftProduct(ProductDerivative product, Partner partner, int quantity) throws NotEnoughProductsException {
+    _stateLock.readLock().lock();
+    int[] stripes = lockRecipe(product);
+    try {
+      UndoLog undo = new UndoLog();
+      try {
+        craftProduct(product, partner, quantity, 1, undo);
+        undo.commit();
+      } catch (NotEnoughProductsException e) {
+        undo.rollback();
+        throw e;
+      }
+    } finally {
+      unlockRecipe(stripes);
+      _stateLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @@param product product to be crafted
+   * @@param partner partner associated with product
+   * @@param quantity quantity to be crafted
+   * @@param depth level of the product in the recipe tree being crafted
+   * @@param undo where to record the changes, to be undone if some component runs out
+   * @@throws NotEnoughProductsException if a simple component runs out (the changes are not undone)
+   */
+  private void craftProduct(ProductDerivative product, Partner partner, int quantity, int depth, UndoLog undo) throws NotEnoughProductsException {
+    CraftEvent event = new CraftEvent();
+    event.begin();
+    OperationStats stats = STATS.get();
+    long batchesTouched = stats.batchesTouched;
+    stats.craftDepth = Math.max(stats.craftDepth, depth);
+
+    if (event.shouldCommit()) {
+      event.partner = partner.getId();
+      event.product = product.getId();
+      event.quantity = quantity;
+      event.depth = depth;
+    }
+
+    int[] components = product.getRecipe().getHandles();
+    int[] quantities = product.getRecipe().getQuantities();
 
     while (quantity > 0) { // While quantity requested hasn't been reached
       float price = 0;
 
-      for (Product p : recipe.getProducts()) { // Consume each of the recipe's products
-        if (p.getStock() < recipe.getProductQuantity(p)) {
-          craftProduct((ProductDerivative) p, partner, recipe.getProductQuantity(p) - p.getStock());
+      for (int i = 0; i < components.length; i++) { // Consume each of the recipe's products
+        int needed = quantities[i];
+        int stock = _productColumns.getStock(components[i]);
+        Product p = _productColumns.get(components[i]);
+
+        if (stock < needed) {
+          if (p.getRecipe() == null) { throw new NotEnoughProductsException(p.getId(), needed, stock); }
+          craftProduct((ProductDerivative) p, partner, needed - stock, depth + 1, undo);
         }
 
-        price += consumeProducts(p, recipe.getProductQuantity(p)); // Price gets summed
+        price += consumeProducts(p, needed, undo); // Price gets summed
       }
 
       price *= (1 + product.getMultiplier()); // Calculate price of the new batch
 
-      registerNewBatch(product, partner, price, 1);
+      registerNewBatch(product, partner, price, 1, undo);
+      quantity--;
+    }
+
+    if (event.shouldCommit()) {
+      event.batchesTouched = stats.batchesTouched - batchesTouched;
+      event.commit();
+    }
+  }
+
+  /**
+   * Crafts what a sale lacks. Crafting goes ahead without checking the
+   * recipe tree first: every change is recorded, and if a component runs out
+   * the changes are undone and the shortfall is reported.
+   *
+   * @@param product product being sold
+   * @@param partner partner associated with sale
+   * @@param amount product's amount to be sold
+   * @@param stockNeeded amount missing from the product's stock
+   * @@throws NotEnoughProductsException for the first missing simple product or, failing that, the product itself
+   */
+  private void craftForSale(Product product, Partner partner, int amount, int stockNeeded) throws NotEnoughProductsException {
+    if (product.getRecipe() != null) {
+      UndoLog undo = new UndoLog();
+      try {
+        craftProduct((ProductDerivative) product, partner, stockNeeded, 1, undo); // Craft the product
+        undo.commit();
+        return;
+      } catch (NotEnoughProductsException e) {
+        undo.rollback();
+      }
+    }
+
+    throw saleShortfall(product, amount, stockNeeded);
+  }
+
+  /**
+   * @@param product product being sold
+   * @@param amount product's amount to be sold
+   * @@param stockNeeded amount missing from the product's stock
+   * @@return the shortfall to report for a sale that cannot be made
+   */
+  private NotEnoughProductsException saleShortfall(Product product, int amount, int stockNeeded) {
+    try {
+      product.throwFirstMissingSimpleProduct(stockNeeded);
+    } catch (NotEnoughProductsException e) {
+      return e;
+    }
+    // If no simple product is missing, report the product itself
+    return new NotEnoughProductsException(product.getId(), amount, product.getStock());
+  }
+
+  /**
+   * @@param partnerStr partner's id
+   * @@param productStr product's id
+   * @@param amount product's amount to be sold
+   * @@param deadline payment deadline
+   * @@return what the sale would do, if made now
+   * @@throws NoSuchPartnerException
+   * @@throws NoSuchProductException
+   */
+  public SaleQuote quoteSale(String partnerStr, String productStr, int amount, int deadline) throws NoSuchPartnerException, NoSuchProductException {
+    return quoteSale(lookupPartner(partnerStr), lookupProduct(productStr), amount, deadline);
+  }
+
+  /**
+   * Works out what attemptSale would do, without changing anything: crafting
+   * and consuming run over a StockOverlay instead of the products and batches.
+   *
+   * @@param partner partner associated with sale
+   * @@param product product being sold
+   * @@param amount product's amount to be sold
+   * @@param deadline payment deadline
+   * @@return what the sale would do, if made now
+   */
+  public SaleQuote quoteSale(Partner partner, Product product, int amount, int deadline) {
+    _stateLock.readLock().lock();
+    int[] stripes = lockRecipe(product);
+    try {
+      StockOverlay overlay = new StockOverlay();
+      int stockNeeded = amount - product.getStock();
+
+      if (stockNeeded > 0) {
+        try {
+          if (product.getRecipe() == null) { return new SaleQuote(saleShortfall(product, amount, stockNeeded)); }
+          quoteCraft(overlay, (ProductDerivative) product, partner, stockNeeded);
+        } catch (NotEnoughProductsException e) {
+          return new SaleQuote(saleShortfall(product, amount, stockNeeded));
+        }
+      }
+
+      float price = overlay.consumeProducts(product, amount);
+      float value = new Sale(-1, partner, product, amount, price, price, deadline).calculateRealValue(_date);
+      return new SaleQuote(price, value, overlay.getCrafted(), overlay.getConsumed());
+    } finally {
+      unlockRecipe(stripes);
+      _stateLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Crafts over an overlay, as craftProduct does over the warehouse.
+   *
+   * @@param overlay stock being worked on
+   * @@param product product to be crafted
+   * @@param partner partner associated with product
+   * @@param quantity quantity to be crafted
+   * @@throws NotEnoughProductsException if a simple component runs out
+   */
+  private void quoteCraft(StockOverlay overlay, ProductDerivative product, Partner partner, int quantity) throws NotEnoughProductsException {
+    int[] components = product.getRecipe().getHandles();
+    int[] quantities = product.getRecipe().getQuantities();
+
+    while (quantity > 0) {
+      float price = 0;
+
+      for (int i = 0; i < components.length; i++) {
+        int needed = quantities[i];
+        Product p = _productColumns.get(components[i]);
+
+        if (overlay.getStock(p) < needed) {
+          if (p.getRecipe() == null) { throw new NotEnoughProductsException(p.getId(), needed, overlay.getStock(p)); }
+          quoteCraft(overlay, (ProductDerivative) p, partner, needed - overlay.getStock(p));
+        }
+
+        price += overlay.consumeProducts(p, needed);
+      }
+
+      price *= (1 + product.getMultiplier());
+
+      overlay.addCraftedUnit(product, partner, price);
       quantity--;
     }
   }
@@ -444,28 +1285,51 @@ public class Warehouse implements Serializable {
    */
 
   public Sale attemptSale(Partner partner, Product product, int amount, int deadline) throws NotEnoughProductsException {
-    if (product.getStock() >= amount) { // Check if product stock is directly enough to sell
-      float price = consumeProducts(product, amount);
-      Sale sale = new Sale(getTotalTransactions(), partner, product, amount, price, price, deadline); // FIXME
-      _transactions.add(sale);
-      partner.addSale(sale);
-
-      return sale;
-    } else { // If product stock isn't enough, check if difference between stock and requested amount can be crafted
-      int stockNeeded = amount - product.getStock(); // Calculate difference
-
-      if (product.enoughStock(amount)) { // Check if it can be crafted
-        if (product.getRecipe() != null) {
-          craftProduct((ProductDerivative) product, partner, stockNeeded); // Craft the product
-          return attemptSale(partner, product, amount, deadline); // Try to sell again
-        }
-      } else {
-        product.throwFirstMissingSimpleProduct(stockNeeded);
+    SaleEvent event = new SaleEvent();
+    event.begin();
+    OperationStats stats = STATS.get();
+    long batchesTouched = stats.batchesTouched;
+    int stockNeeded = 0;
+    float price;
+    Sale sale;
+    stats.craftDepth = 0;
+
+    _stateLock.readLock().lock();
+    int[] stripes = lockRecipe(product);
+    try {
+      if (product.getStock() < amount) { // If product stock isn't enough, craft the difference
+        stockNeeded = amount - product.getStock(); // Calculate difference
+        craftForSale(product, partner, amount, stockNeeded);
       }
+
+      price = consumeProducts(product, amount);
+      float value = price;
+      sale = registerTransaction(id -> new Sale(id, partner, product, amount, value, value, deadline)); // FIXME
+
+      _partnerLocks.lock(partner.getHandle());
+      try {
+        partner.addSale(sale);
+      } finally {
+        _partnerLocks.unlock(partner.getHandle());
+      }
+      updateLedger(0, 1, Money.of(sale.calculateRealValue(_date)));
+    } finally {
+      unlockRecipe(stripes);
+      _stateLock.readLock().unlock();
     }
 
-    // If none of the above are successful, throw exception
-    throw new NotEnoughProductsException(product.getId(), amount, product.getStock());
+    if (event.shouldCommit()) {
+      event.partner = partner.getId();
+      event.product = product.getId();
+      event.amount = amount;
+      event.price = price;
+      event.crafted = stockNeeded;
+      event.craftDepth = stats.craftDepth;
+      event.batchesTouched = stats.batchesTouched - batchesTouched;
+      event.commit();
+    }
+
+    return sale;
   }
 
   /**
@@ -493,23 +1357,60 @@ public class Warehouse implements Serializable {
    */
 
   public Acquisition acquire(Partner partner, Product product, int amount, float price, boolean newProduct) {
-    _availableBalance -= amount * price;
+    return acquire(partner, product, amount, price, newProduct, null);
+  }
+
+  /**
+   * @@param partner partner associated with acquisition
+   * @@param product product being acquired
+   * @@param amount product's amount to be acquired
+   * @@param price product's price
+   * @@param deferred where to queue the acquisition's notifications (null to deliver them now)
+   * @@return acquisition made
+   */
+  private Acquisition acquire(Partner partner, Product product, int amount, float price, boolean newProduct, List<Notification> deferred) {
+    AcquisitionEvent event = new AcquisitionEvent();
+    event.begin();
+    int notifications = 0;
+    Acquisition acquisition;
+
+    _stateLock.readLock().lock();
+    _productLocks.lock(product.getHandle());
+    try {
+      updateLedger(Money.of(-amount * price), 0, 0);
 
-    // Look up the cheapest batch to check for notifications
-    Batch cheapestBatch = getCheapestBatch(product);
+      // Look up the cheapest batch to check for notifications
+      Batch cheapestBatch = getCheapestBatch(product);
 
-    // If stock was 0, then emit a notification for NEW
-    if (!newProduct && product.getStock() == 0) { _notStation.emitNotification(new Notification("NEW", product, price)); }
+      // If stock was 0, then emit a notification for NEW
+      if (!newProduct && product.getStock() == 0) { notifications += emitNotification(new Notification("NEW", product, price), deferred); }
 
-    // If new price is cheaper than old cheapest batch, then emit a notification for BARGAIN
-    if (cheapestBatch != null && cheapestBatch.getPrice() > price) { _notStation.emitNotification(new Notification("BARGAIN", product, price)); }
+      // If new price is cheaper than old cheapest batch, then emit a notification for BARGAIN
+      if (cheapestBatch != null && cheapestBatch.getPrice() > price) { notifications += emitNotification(new Notification("BARGAIN", product, price), deferred); }
 
-    registerNewBatch(product, partner, price, amount);
+      registerNewBatch(product, partner, price, amount);
 
-    Acquisition acquisition = new Acquisition(getTotalTransactions(), partner, product, amount, price, _date);
+      acquisition = registerTransaction(id -> new Acquisition(id, partner, product, amount, price, _date));
+
+      _partnerLocks.lock(partner.getHandle());
+      try {
+        partner.addAcquisition(acquisition);
+      } finally {
+        _partnerLocks.unlock(partner.getHandle());
+      }
+    } finally {
+      _productLocks.unlock(product.getHandle());
+      _stateLock.readLock().unlock();
+    }
 
-    _transactions.add(acquisition);
-    lookupAcquisitionsByPartner(partner).add(acquisition);
+    if (event.shouldCommit()) {
+      event.partner = partner.getId();
+      event.product = product.getId();
+      event.amount = amount;
+      event.price = price;
+      event.notifications = notifications;
+      event.commit();
+    }
 
     return acquisition;
   }
@@ -541,33 +1442,61 @@ public class Warehouse implements Serializable {
    */
 
   public Breakdown attemptBreakdown(Partner partner, Product product, int amount) throws NotEnoughProductsException {
-    if (product.getStock() < amount) { throw new NotEnoughProductsException(product.getId(), amount, product.getStock()); } // If not enough stock, fails
-    if (product.getRecipe() == null) { return null; } // If product is simple, don't do anything
+    BreakdownEvent event = new BreakdownEvent();
+    event.begin();
+    long batchesTouched = STATS.get().batchesTouched;
+    float price = 0;
+    Breakdown breakdown;
 
-    Recipe recipe = product.getRecipe();
+    _stateLock.readLock().lock();
+    int[] stripes = lockRecipe(product);
+    try {
+      if (product.getStock() < amount) { throw new NotEnoughProductsException(product.getId(), amount, product.getStock()); } // If not enough stock, fails
+      if (product.getRecipe() == null) { return null; } // If product is simple, don't do anything
 
-    float price = 0;
-    price += consumeProducts(product, amount);
-    Receipt receipt = new Receipt(product.getRecipe(), amount);
-    float productPrice;
+      Recipe recipe = product.getRecipe();
 
-    for (Product p: recipe.getProducts()) { // Go to each product in the recipe
+      price += consumeProducts(product, amount);
+      Receipt receipt = new Receipt(product.getRecipe(), amount);
+      float productPrice;
+
+      for (Product p: recipe.getProducts()) { // Go to each product in the recipe
+
+        if (p.getStock() == 0) { // If there is no batch, create one with highest price ever registered
+          productPrice = p.getMaxPrice();
+        } else { // If there is a batch, create one with the same price.
+          productPrice = getCheapestBatch(p).getPrice();
+        }
 
-      if (p.getStock() == 0) { // If there is no batch, create one with highest price ever registered
-        productPrice = p.getMaxPrice();
-      } else { // If there is a batch, create one with the same price.
-        productPrice = getCheapestBatch(p).getPrice();
+        registerNewBatch(p, partner, productPrice, amount * recipe.getProductQuantity(p));
+        receipt.productSetPrice(p, productPrice); // Set the price in the receipt
+        price -= productPrice * amount * recipe.getProductQuantity(p); // Subtract the product price from the final price
       }
 
-      registerNewBatch(p, partner, productPrice, amount * recipe.getProductQuantity(p));
-      receipt.productSetPrice(p, productPrice); // Set the price in the receipt
-      price -= productPrice * amount * recipe.getProductQuantity(p); // Subtract the product price from the final price
+      float value = price;
+      breakdown = registerTransaction(id -> new Breakdown(id, partner, product, amount, value, getDate(), receipt));
+      updateLedger(0, 1, Money.of(breakdown.calculateRealValue(_date)));
+      pay(breakdown);
+
+      _partnerLocks.lock(partner.getHandle());
+      try {
+        partner.addBreakdown(breakdown);
+      } finally {
+        _partnerLocks.unlock(partner.getHandle());
+      }
+    } finally {
+      unlockRecipe(stripes);
+      _stateLock.readLock().unlock();
     }
 
-    Breakdown breakdown = new Breakdown(getTotalTransactions(), partner, product, amount, price, getDate(), receipt);
-    pay(breakdown);
-    partner.addBreakdown(breakdown);
-    _transactions.add(breakdown);
+    if (event.shouldCommit()) {
+      event.partner = partner.getId();
+      event.product = product.getId();
+      event.amount = amount;
+      event.value = price;
+      event.batchesTouched = STATS.get().batchesTouched - batchesTouched;
+      event.commit();
+    }
 
     return breakdown;
   }
@@ -588,11 +1517,140 @@ public class Warehouse implements Serializable {
    */
 
   public void pay(Transaction transaction) {
-    if (!transaction.paid()){
-    transaction.markAsPaid(_date);
+    PaymentEvent event = new PaymentEvent();
+    event.begin();
+
+    Partner partner = transaction.getPartner();
+
+    _stateLock.readLock().lock();
+    _partnerLocks.lock(partner.getHandle());
+    try {
+      if (transaction.paid()) { return; }
+
+      Status status = partner.getStatus();
+      long receivables = -Money.of(transaction.calculateRealValue(_date));
+
+      transaction.markAsPaid(_date);
+
+      // A change of status changes the value of the partner's other unpaid sales
+      if (partner.getStatus() != status) {
+        receivables += partner.getUnpaidSalesValue(partner.getStatus(), _date) - partner.getUnpaidSalesValue(status, _date);
+      }
+
+      updateLedger(Money.of(transaction.getRealValue()), -1, receivables);
+    } finally {
+      _partnerLocks.unlock(partner.getHandle());
+      _stateLock.readLock().unlock();
+    }
+
+    if (event.shouldCommit()) {
+      event.transaction = transaction.getId();
+      event.partner = partner.getId();
+      event.value = transaction.getRealValue();
+      event.daysLate = Math.max(0, _date - transaction.getDeadline());
+      event.commit();
+    }
+  }
+
+  /**
+   * @@param notification notification to emit
+   * @@param deferred where to queue it (null to deliver it now)
+   * @@return number of deliveries made now
+   */
+  private int emitNotification(Notification notification, List<Notification> deferred) {
+    if (deferred == null) {
+      return _notStation.emitNotification(notification);
+    }
+    deferred.add(notification);
+    return 0;
+  }
+
+  /**
+   * Applies operations in order. Each partner and product id is looked up
+   * once per batch, the state lock is taken once, and the acquisitions'
+   * notifications are delivered together at the end (taking each mailbox
+   * once). An operation that fails does not stop the others.
+   *
+   * @@param operations operations to apply
+   * @@return each operation's result, in order
+   */
+  public List<BatchResult> applyBatch(List<BatchOperation> operations) {
+    Map<String, Partner> partners = new HashMap<String, Partner>();
+    Map<String, Product> products = new HashMap<String, Product>();
+    List<Notification> notifications = new ArrayList<Notification>();
+    List<BatchResult> results = new ArrayList<BatchResult>(operations.size());
+
+    _stateLock.readLock().lock();
+    try {
+      for (BatchOperation operation: operations) {
+        try {
+          results.add(BatchResult.succeeded(applyOperation(operation, partners, products, notifications)));
+        } catch (NoSuchPartnerException | NoSuchProductException | NoSuchTransactionException | NotEnoughProductsException e) {
+          results.add(BatchResult.failed(e));
+        }
+      }
+    } finally {
+      _stateLock.readLock().unlock();
+      _notStation.emitNotifications(notifications);
+    }
+
+    return results;
+  }
+
+  /**
+   * @@param operation operation to apply
+   * @@param partners partners already looked up in this batch, by id
+   * @@param products products already looked up in this batch, by id
+   * @@param notifications where to queue notifications
+   * @@return transaction made or paid (null if none)
+   */
+  private Transaction applyOperation(BatchOperation operation, Map<String, Partner> partners, Map<String, Product> products,
+      List<Notification> notifications) throws NoSuchPartnerException, NoSuchProductException, NoSuchTransactionException, NotEnoughProductsException {
+    switch (operation.getKind()) {
+      case SALE:
+        return attemptSale(lookupPartner(operation.getPartner(), partners), lookupProduct(operation.getProduct(), products),
+            operation.getAmount(), operation.getDeadline());
+      case ACQUISITION:
+        return acquire(lookupPartner(operation.getPartner(), partners), lookupProduct(operation.getProduct(), products),
+            operation.getAmount(), operation.getPrice(), false, notifications);
+      case BREAKDOWN:
+        return attemptBreakdown(lookupPartner(operation.getPartner(), partners), lookupProduct(operation.getProduct(), products),
+            operation.getAmount());
+      default:
+        Transaction transaction = lookupTransaction(operation.getTransaction());
+        pay(transaction);
+        return transaction;
+    }
+  }
 
-    _availableBalance += transaction.getRealValue();
+  /**
+   * @@param id partner's id
+   * @@param found partners already looked up, by id (updated)
+   * @@return partner
+   * @@throws NoSuchPartnerException
+   */
+  private Partner lookupPartner(String id, Map<String, Partner> found) throws NoSuchPartnerException {
+    Partner partner = found.get(id);
+    if (partner == null) {
+      partner = lookupPartner(id);
+      found.put(id, partner);
+    }
+    return partner;
+  }
+
+  /**
+   * @@param id product's id
+   * @@param found products already looked up, by id (updated)
+   * @@return product
+   * @@throws NoSuchProductException
+   */
+  private Product lookupProduct(String id, Map<String, Product> found) throws NoSuchProductException {
+    Product product = found.get(id);
+    if (product == null) {
+      product = lookupProduct(id);
+      found.put(id, product);
     }
+    return product;
   }
 
   /**
@@ -609,7 +1667,7 @@ public class Warehouse implements Serializable {
    * @@return list of selected partner paid sales
    */
   public ArrayList<Transaction> lookupPaidSalesByPartner(Partner partner) {
-    return partner.getPaidSales();
+    return readPartner(partner, () -> partner.getPaidSales());
   }
 
 
@@ -628,11 +1686,18 @@ public class Warehouse implements Serializable {
    * @@return list of selected partner sales
    */
   public ArrayList<Transaction> lookupSalesByPartner(Partner partner) {
-    for (Transaction t: partner.getSales()) {
-      t.updateRealValue(_date);
-    }
+    _partnerLocks.lock(partner.getHandle());
+    try {
+      ArrayList<Transaction> sales = partner.getSales();
 
-    return partner.getSales();
+      for (Transaction t: sales) {
+        t.updateRealValue(_date);
+      }
+
+      return sales;
+    } finally {
+      _partnerLocks.unlock(partner.getHandle());
+    }
   }
 
       
@@ -692,8 +1757,7 @@ public class Warehouse implements Serializable {
    * @@return acquisitions by partner 
    */  
   public ArrayList<Transaction> lookupAcquisitionsByPartner(Partner partner) {
-    return partner.getAcquisitions();
-
+    return readPartner(partner, () -> new ArrayList<Transaction>(partner.getAcquisitions()));
   }
 
   /**
@@ -704,7 +1768,10 @@ public class Warehouse implements Serializable {
   public Transaction lookupTransaction(int id) throws NoSuchTransactionException {
     if (id >= _transactions.size() || id < 0) { throw new NoSuchTransactionException(id); }
 
-    return _transactions.get(id);
+    Transaction transaction = _transactions.get(id);
+    if (transaction == null) { throw new NoSuchTransactionException(id); }
+
+    return transaction;
   }
 
 
@@ -718,13 +1785,42 @@ public class Warehouse implements Serializable {
    * @@throws UnavailableFileException
    */
   public void registerNewBatch (Product product, Partner partner, float price, int stock){
-    Batch batch = new Batch(product, partner, price, stock);
-
-    product.addStock(stock);
-    if (product.getMaxPrice() < price) { product.setMaxPrice(price); }
+    registerNewBatch(product, partner, price, stock, null);
+  }
 
-    partner.addBatch(batch);
-    product.addBatch(batch);
+  /**
+   * @@param product product associated with batch
+   * @@param partner partner associated with batch
+   * @@param price product's price
+   * @@param stock product's stock
+   * @@param undo where to record the change (null if it is not to be undone)
+   */
+  private void registerNewBatch(Product product, Partner partner, float price, int stock, UndoLog undo) {
+    _productLocks.lock(product.getHandle());
+    try {
+      Batch batch = _batchStore.view(_batchStore.allocate(product, partner, price, stock));
+      if (undo != null) {
+        float maxPrice = product.getMaxPrice();
+        undo.record(() -> {
+          destroyBatch(batch, null);
+          product.addStock(-stock);
+          product.setMaxPrice(maxPrice);
+        });
+      }
+      product.addStock(stock);
+      if (product.getMaxPrice() < price) { product.setMaxPrice(price); }
+
+      _partnerLocks.lock(partner.getHandle());
+      try {
+        partner.addBatch(batch);
+      } finally {
+        _partnerLocks.unlock(partner.getHandle());
+      }
+      product.addBatch(batch);
+    } finally {
+      _productLocks.unlock(product.getHandle());
+    }
+    updateBatchCount(1);
   }
 
   /**
@@ -737,9 +1833,38 @@ public class Warehouse implements Serializable {
    */
   public void importFile (String txtfile) throws
           IOException, BadEntryException, DuplicatePartnerException, NoSuchPartnerException, NoSuchProductException {
+    _stateLock.writeLock().lock();
+    try {
+      importLines(txtfile);
+    } finally {
+      _stateLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param txtfile filename to be loaded.
+   * @throws IOException
+   * @throws BadEntryException
+   * @throws DuplicatePartnerException
+   * @throws NoSuchPartnerException
+   * @throws NoSuchProductException
+   */
+  private void importLines (String txtfile) throws
+          IOException, BadEntryException, DuplicatePartnerException, NoSuchPartnerException, NoSuchProductException {
     BufferedReader in = new BufferedReader(new FileReader(txtfile));
     String s;
+    int lines = 0;
+    ImportChunkEvent event = new ImportChunkEvent();
+    event.begin();
+
     while ((s = in.readLine()) != null) {
+      if (lines > 0 && lines % IMPORT_CHUNK_LINES == 0) {
+        commitImportChunk(event, txtfile, lines);
+        event = new ImportChunkEvent();
+        event.begin();
+      }
+      lines++;
+
       String line = new String(s.getBytes(), "UTF-8");
       String[] fields = line.split("\\|");
 
@@ -784,6 +1909,23 @@ public class Warehouse implements Serializable {
         default -> throw new BadEntryException(fields[0]);
       }
     }
+
+    commitImportChunk(event, txtfile, lines);
+  }
+
+  /**
+   * @param event event covering the latest chunk of lines
+   * @param txtfile file being imported
+   * @param lines lines read so far
+   */
+  private static void commitImportChunk(ImportChunkEvent event, String txtfile, int lines) {
+    if (event.shouldCommit()) {
+      int chunkLines = lines % IMPORT_CHUNK_LINES == 0 ? Math.min(lines, IMPORT_CHUNK_LINES) : lines % IMPORT_CHUNK_LINES;
+      event.file = txtfile;
+      event.chunk = (lines - 1) / IMPORT_CHUNK_LINES;
+      event.lines = chunkLines;
+      event.commit();
+    }
   }
 }
 
@@ -1,69 +1,229 @@
 package ggc;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import ggc.events.*;
 import ggc.exceptions.*;
 import ggc.partners.*;
 import ggc.products.*;
 import ggc.transactions.*;
 
-/** Façade for access. */
+/**
+ * Façade for access.
+ *
+ * Writes run in parallel (the warehouse locks what each one touches).
+ * Reads neither wait for writes nor hold them off: each product or partner
+ * they show is read without its lock and checked against the version of
+ * that lock (see Warehouse.readProduct and readPartner), and batches come
+ * from copies or from the partners' persistent trees. So every line shown
+ * belongs to a single version of what it shows, although lines about
+ * different products or partners may come from moments a write apart.
+ * Since a read may be retried, reads must not change the warehouse; those
+ * that do (reading a partner's notifications, revaluing sales) run as
+ * writes. Saving and loading hold writes off, through the gate.
+ */
 public class WarehouseManager {
 
   /** Name of file storing current store. */
-  private String _filename = "";
+  private volatile String _filename = "";
 
-  private boolean _missingFilename = true;
-  private boolean _updated = true;
+  private volatile boolean _missingFilename = true;
+  private volatile boolean _updated = true;
 
   /** The warehouse itself. */
-  private Warehouse _warehouse = new Warehouse();
+  private volatile Warehouse _warehouse = new Warehouse();
+
+  /** When the state was last saved or loaded (milliseconds since the epoch, 0 if never). */
+  private volatile long _lastSaveTime = 0;
+
+  /** Size of the last saved or loaded state file (-1 if none). */
+  private volatile long _snapshotSize = -1;
+
+  /** Base name of the metrics MBean. */
+  private static final String MBEAN_NAME = "ggc:type=Warehouse";
+
+  /** Held by writes, and by saves and loads, which must not overlap them. */
+  private final ReadWriteGate _gate = new ReadWriteGate();
+
+  /** Number of writes finished, and of warehouses loaded (the warehouse's version). */
+  private final AtomicLong _writesFinished = new AtomicLong();
 
 
   public boolean missingFilename() { return _missingFilename; }
 
   public String getFilename() { return _filename; }
 
+  Warehouse getWarehouse() { return _warehouse; }
+
+  public long getLastSaveTime() { return _lastSaveTime; }
+
+  public long getSnapshotSize() { return _snapshotSize; }
+
+  /**
+   * @@return number of writes done so far, which changes whenever the warehouse may have
+   */
+  public long getVersion() { return _writesFinished.get(); }
+
+  /**
+   * Starts an operation that may change the warehouse (must be followed by endWrite).
+   */
+  private void beginWrite() {
+    _gate.enterWrite();
+  }
+
+  /**
+   * Ends an operation started with beginWrite.
+   */
+  private void endWrite() {
+    _writesFinished.incrementAndGet();
+    _gate.exitWrite();
+  }
+
+  /**
+   * Runs a read on the current warehouse (a load may replace it meanwhile,
+   * leaving the read on the one it started with). The read checks the
+   * versions of what it shows itself; nothing is locked here.
+   *
+   * @@param operation operation that does not change the warehouse
+   * @@return result of the operation
+   */
+  private <T, E extends Exception> T read(WarehouseOperation<T, E> operation) throws E {
+    return operation.apply(_warehouse);
+  }
+
+  /**
+   * @@param items items to be shown
+   * @@return each item's text
+   */
+  private static List<String> render(Collection<?> items) {
+    return render(items, Object::toString);
+  }
+
+  /**
+   * @@param items items to be shown
+   * @@param text renders an item
+   * @@return each item's text
+   */
+  private static <T> List<String> render(Collection<T> items, Function<? super T, String> text) {
+    List<String> lines = new ArrayList<String>(items.size());
+
+    for (T item: items) {
+      lines.add(text.apply(item));
+    }
+
+    return lines;
+  }
+
+  /**
+   * Exports this manager's metrics as a platform MBean (see WarehouseMetricsMXBean),
+   * named ggc:type=Warehouse, or ggc:type=Warehouse,instance=N if that name is taken.
+   *
+   * @@return the MBean's name
+   * @@throws JMException
+   */
+  public ObjectName registerMBean() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(MBEAN_NAME);
+
+    for (int i = 1; server.isRegistered(name); i++) {
+      name = new ObjectName(MBEAN_NAME + ",instance=" + i);
+    }
+    server.registerMBean(new WarehouseMetrics(this), name);
+
+    return name;
+  }
+
   public void requestDateToAdvance(int days) throws NoSuchDateException {
-    _warehouse.advanceDate(days);
+    beginWrite();
+    try {
+      _warehouse.advanceDate(days);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
+  /**
+   * @@return how many batches were merged (see Warehouse.compactBatches) and how long it took
+   */
+  public CompactionResult requestCompactBatches() {
+    CompactionResult result;
+
+    beginWrite();
+    try {
+      result = _warehouse.compactBatches(0);
+    } finally {
+      endWrite();
+    }
+    if (result.getMerged() > 0) {
+      _updated = true;
+    }
+
+    return result;
+  }
+
   public double requestAvailableBalance() {
     return _warehouse.getAvailableBalance();
   }
 
   public double requestContabilisticBalance() {
-    return _warehouse.getContabilisticBalance();
+    // Revalues the unpaid sales
+    beginWrite();
+    try {
+      return _warehouse.getContabilisticBalance();
+    } finally {
+      endWrite();
+    }
+  }
+
+  /**
+   * @@return unpaid sales and their value at the current date, by payment period
+   */
+  public ReceivablesAging requestReceivablesAging() {
+    // Shares the warehouse's state lock with writes: only a date advance, which revalues every sale, holds it off
+    return read(w -> w.getReceivablesAging());
   }
 
   public int requestDate(){
     return _warehouse.getDate();
   }
 
-  public Set<Product> requestListAllProducts() {
-    return _warehouse.listAllProducts();
+  public List<String> requestListAllProducts() {
+    // Each product's stock and prices are read against its lock
+    return read(w -> render(w.listAllProducts(), p -> w.readProduct(p, p::toString)));
   }
 
-  public ArrayList<Batch> requestListAllBatches() {
-    return _warehouse.listAllBatches();
+  public List<String> requestListAllBatches() {
+    return read(w -> render(w.listAllBatches()));
   }
 
-  public List<Batch> requestListBatchesByProduct(String product) throws NoSuchProductException {
-    return _warehouse.listBatchesByProduct(product);
+  public List<String> requestListBatchesByProduct(String product) throws NoSuchProductException {
+    return read(w -> render(w.listBatchesByProduct(product)));
   }
 
-  public List<Batch> requestListBatchesByPartner(String partner) throws NoSuchPartnerException {
-    return _warehouse.listBatchesByPartner(partner);
+  public List<String> requestListBatchesByPartner(String partner) throws NoSuchPartnerException {
+    return read(w -> render(w.listBatchesByPartner(partner)));
   }
 
   public void requestRegisterPartner(String id, String name, String address) throws DuplicatePartnerException {
-    _warehouse.registerNewPartner(id, name, address);
+    beginWrite();
+    try {
+      _warehouse.registerNewPartner(id, name, address);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
-  public Set<Partner> requestListAllPartners () {
-    return _warehouse.listAllPartners();
+  public List<String> requestListAllPartners () {
+    // As is each partner's status and transactions
+    return read(w -> render(w.listAllPartners(), p -> w.readPartner(p, p::toString)));
   }
 
   public Partner requestShowPartner(String partner) throws NoSuchPartnerException {
@@ -71,66 +231,152 @@ public class WarehouseManager {
   }
 
   public ArrayList<String> requestShowSpecificPartner(String id) throws NoSuchPartnerException {
-    return _warehouse.lookupPartnerPlusNotifications(id);
+    // Reading the notifications clears them
+    beginWrite();
+    try {
+      return _warehouse.lookupPartnerPlusNotifications(id);
+    } finally {
+      endWrite();
+    }
   }
 
   public List<Notification> requestListPartnerNotificationsByMethod(String partner, String method) throws NoSuchPartnerException {
-    return _warehouse.listPartnerNotificationsByMethod(partner, method);
+    // Listing all the notifications clears them
+    beginWrite();
+    try {
+      return _warehouse.listPartnerNotificationsByMethod(partner, method);
+    } finally {
+      endWrite();
+    }
   }
 
-  public List<Batch> requestListBatchesUnderGivenPrice(float price) {
-    return _warehouse.listBatchesUnderGivenPrice(price);
+  public List<String> requestListBatchesUnderGivenPrice(float price) {
+    return read(w -> render(w.listBatchesUnderGivenPrice(price)));
   }
 
   public void requestToggleProductNotifications(String partner, String product) throws NoSuchPartnerException, NoSuchProductException {
-   _warehouse.toggleProductNotifications(partner, product);
-   _updated = true;
+    beginWrite();
+    try {
+      _warehouse.toggleProductNotifications(partner, product);
+    } finally {
+      endWrite();
+    }
+    _updated = true;
   }
 
-  public ArrayList<Transaction> requestShowPartnerPaidSales(String partner) throws NoSuchPartnerException {
-    return _warehouse.lookupPaidSalesByPartner(partner);
+  public List<String> requestShowPartnerPaidSales(String partner) throws NoSuchPartnerException {
+    return read(w -> render(w.lookupPaidSalesByPartner(partner)));
   }
 
-  public ArrayList<Transaction> requestShowPartnerSales(String partner) throws NoSuchPartnerException {
-    return _warehouse.lookupSalesByPartner(partner);
+  public List<String> requestShowPartnerSales(String partner) throws NoSuchPartnerException {
+    // Revalues the partner's sales
+    beginWrite();
+    try {
+      return render(_warehouse.lookupSalesByPartner(partner));
+    } finally {
+      endWrite();
+    }
+  }
+
+  public List<String> requestShowPartnerAcquisitions(String partner) throws NoSuchPartnerException {
+    return read(w -> render(w.lookupAcquisitionsByPartner(partner)));
   }
 
-  public ArrayList<Transaction> requestShowPartnerAcquisitions(String partner) throws NoSuchPartnerException {
-    return _warehouse.lookupAcquisitionsByPartner(partner);
+  public String requestShowTransaction(int id) throws NoSuchTransactionException {
+    return read(w -> {
+      Transaction transaction = w.lookupTransaction(id);
+      // Paying a transaction, or revaluing a sale, holds its partner's lock
+      return w.readPartner(transaction.getPartner(), transaction::toString);
+    });
   }
 
-  public Transaction requestShowTransaction(int id) throws NoSuchTransactionException {
-    return _warehouse.lookupTransaction(id);
+  /**
+   * @@return what the sale would do if made now (price, crafting, batches taken, or shortfall), changing nothing
+   */
+  public SaleQuote requestQuoteSale(String partner, int deadline, String product, int amount) throws NoSuchPartnerException, NoSuchProductException {
+    // Consistent without the gate: the quote holds the locks of the products it reads
+    return _warehouse.quoteSale(partner, product, amount, deadline);
   }
 
   public void requestPay(int id) throws NoSuchTransactionException {
-    _warehouse.pay(id);
+    beginWrite();
+    try {
+      _warehouse.pay(id);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
     public void requestAttemptBreakdown(String partner, String product, int amount) throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
-    _warehouse.attemptBreakdown(partner, product, amount);
+    beginWrite();
+    try {
+      _warehouse.attemptBreakdown(partner, product, amount);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
   public void requestAttemptSale(String partner, int deadline, String product, int amount) throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
-    _warehouse.attemptSale(partner, product, amount, deadline);
+    beginWrite();
+    try {
+      _warehouse.attemptSale(partner, product, amount, deadline);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
   public void requestAcquire(String partner, String product, float price, int amount) throws NotEnoughProductsException, NoSuchPartnerException, NoSuchProductException {
-    _warehouse.acquire(partner, product, amount, price, false);
+    beginWrite();
+    try {
+      _warehouse.acquire(partner, product, amount, price, false);
+    } finally {
+      endWrite();
+    }
+    _updated = true;
+  }
+
+  /**
+   * Applies many operations in one call: in a single write, looking up each
+   * id once and delivering notifications once (see Warehouse.applyBatch).
+   *
+   * @@param operations operations to apply, in order
+   * @@return each operation's result (its transaction, or why it failed), in order
+   */
+  public List<BatchResult> requestBatch(List<BatchOperation> operations) {
+    List<BatchResult> results;
+
+    beginWrite();
+    try {
+      results = _warehouse.applyBatch(operations);
+    } finally {
+      endWrite();
+    }
     _updated = true;
+
+    return results;
   }
 
   public void requestAcquireNewProductSimple(String partner, String product, float price, int stock) throws NoSuchPartnerException, NoSuchProductException{
     //runs when acquiring a never seen simple product
-    _warehouse.acquireNewProductSimple(partner, product, price, stock);
+    beginWrite();
+    try {
+      _warehouse.acquireNewProductSimple(partner, product, price, stock);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
   public void requestAcquireNewProductDerivative(String partner, String product, float price, int stock, ArrayList<String> products, ArrayList<Integer> productQuantities, float multiplier) throws NoSuchPartnerException, NoSuchProductException{
-    _warehouse.acquireNewProductDerivative(partner, product, price, stock, products, productQuantities, multiplier);
+    beginWrite();
+    try {
+      _warehouse.acquireNewProductDerivative(partner, product, price, stock, products, productQuantities, multiplier);
+    } finally {
+      endWrite();
+    }
     _updated = true;
   }
 
@@ -140,13 +386,38 @@ public class WarehouseManager {
    * @@throws MissingFileAssociationException
    */
   public void save() throws IOException, FileNotFoundException, MissingFileAssociationException {
-    if (!_filename.equals("")) _missingFilename = false;
+    String filename = _filename;
+    if (!filename.equals("")) _missingFilename = false;
     if (missingFilename()) {throw new MissingFileAssociationException();}
     if (_updated == true) {
-      ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(_filename)));
-      oos.writeObject(_warehouse);
-      oos.close();
-      _updated = false;
+      SaveEvent event = new SaveEvent();
+      event.begin();
+
+      // No write may run while the warehouse is written out. Writes set
+      // _updated after they end, so one that ends from here on is saved again.
+      _gate.enterRead();
+      try {
+        _updated = false;
+        ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        try {
+          oos.writeObject(_warehouse);
+        } finally {
+          oos.close();
+        }
+      } catch (IOException e) {
+        _updated = true;
+        throw e;
+      } finally {
+        _gate.exitRead();
+      }
+      _lastSaveTime = System.currentTimeMillis();
+      _snapshotSize = new File(filename).length();
+
+      if (event.shouldCommit()) {
+        event.file = filename;
+        event.bytes = _snapshotSize;
+        event.commit();
+      }
     }  
   }
 
@@ -167,12 +438,29 @@ public class WarehouseManager {
    */
   public void load(String filename) throws UnavailableFileException {
     try {
+      LoadEvent event = new LoadEvent();
+      event.begin();
       ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)));
-      _warehouse = (Warehouse) ois.readObject();
+      Warehouse warehouse = (Warehouse) ois.readObject();
       ois.close();
+
+      // Replacing the warehouse must not overlap any write
+      _gate.enterRead();
+      _warehouse = warehouse;
+      _writesFinished.incrementAndGet();
+      _gate.exitRead();
+
       _filename = filename;
       _missingFilename = false;
       _updated = false;
+      _lastSaveTime = System.currentTimeMillis();
+      _snapshotSize = new File(filename).length();
+
+      if (event.shouldCommit()) {
+        event.file = filename;
+        event.bytes = _snapshotSize;
+        event.commit();
+      }
     } catch (FileNotFoundException fnf) {throw new UnavailableFileException(filename);} 
     catch (IOException | ClassNotFoundException e) { e.printStackTrace(); }
     
@@ -183,11 +471,14 @@ public class WarehouseManager {
    * @throws ImportFileException
    */
   public void importFile(String textfile) throws ImportFileException {
+    beginWrite();
     try {
-	    _warehouse.importFile(textfile);
+      _warehouse.importFile(textfile);
       _updated = true;
     } catch (IOException | BadEntryException | DuplicatePartnerException | NoSuchPartnerException | NoSuchProductException e) {
 	      throw new ImportFileException(textfile);
+    } finally {
+      endWrite();
     }
   }
 }
@@ -0,0 +1,83 @@
+package ggc;
+
+import java.util.Map;
+
+/**
+ * JMX view of a warehouse manager's metrics. It reads through the manager,
+ * so it keeps working after a different warehouse is loaded.
+ */
+class WarehouseMetrics implements WarehouseMetricsMXBean {
+
+  /** The manager whose metrics are exported. */
+  private final WarehouseManager _manager;
+
+  /**
+   * @param manager manager whose metrics are exported
+   */
+  WarehouseMetrics(WarehouseManager manager) {
+    _manager = manager;
+  }
+
+  @Override
+  public int getDate() {
+    return _manager.getWarehouse().getDate();
+  }
+
+  @Override
+  public int getProducts() {
+    return _manager.getWarehouse().getProductCount();
+  }
+
+  @Override
+  public int getPartners() {
+    return _manager.getWarehouse().getPartnerCount();
+  }
+
+  @Override
+  public int getBatches() {
+    return _manager.getWarehouse().getBatchCount();
+  }
+
+  @Override
+  public int getTransactions() {
+    return _manager.getWarehouse().getTotalTransactions();
+  }
+
+  @Override
+  public int getUnpaidSales() {
+    return _manager.getWarehouse().getUnpaidSaleCount();
+  }
+
+  @Override
+  public double getUnpaidReceivables() {
+    return _manager.getWarehouse().getReceivables();
+  }
+
+  @Override
+  public double getAvailableBalance() {
+    return _manager.getWarehouse().getAvailableBalance();
+  }
+
+  @Override
+  public double getContabilisticBalance() {
+    Warehouse warehouse = _manager.getWarehouse();
+    return warehouse.getAvailableBalance() + warehouse.getReceivables();
+  }
+
+  @Override
+  public Map<String, Long> getNotificationBacklog() {
+    return _manager.getWarehouse().getNotificationBacklog();
+  }
+
+  @Override
+  public long getSecondsSinceLastSave() {
+    long lastSave = _manager.getLastSaveTime();
+    return lastSave == 0 ? -1 : (System.currentTimeMillis() - lastSave) / 1000;
+  }
+
+  @Override
+  public long getSnapshotSize() {
+    return _manager.getSnapshotSize();
+  }
+
+}
@@ -0,0 +1,48 @@
+package ggc;
+
+import java.util.Map;
+
+/**
+ * Live metrics of a warehouse, exported through JMX (see
+ * {@link WarehouseManager#registerMBean()}). Every value is maintained as the
+ * warehouse changes, so reading them never scans the warehouse.
+ */
+public interface WarehouseMetricsMXBean {
+
+  /** @return warehouse's current date */
+  int getDate();
+
+  /** @return number of registered products */
+  int getProducts();
+
+  /** @return number of registered partners */
+  int getPartners();
+
+  /** @return number of batches in stock */
+  int getBatches();
+
+  /** @return number of registered transactions */
+  int getTransactions();
+
+  /** @return number of unpaid sales */
+  int getUnpaidSales();
+
+  /** @return real value of the unpaid sales at the current date */
+  double getUnpaidReceivables();
+
+  /** @return warehouse's available balance */
+  double getAvailableBalance();
+
+  /** @return warehouse's contabilistic balance */
+  double getContabilisticBalance();
+
+  /** @return notifications not yet read by partners, by delivery method ("" is the default method) */
+  Map<String, Long> getNotificationBacklog();
+
+  /** @return seconds since the state was last saved or loaded (-1 if never) */
+  long getSecondsSinceLastSave();
+
+  /** @return size in bytes of the last saved or loaded state file (-1 if none) */
+  long getSnapshotSize();
+
+}
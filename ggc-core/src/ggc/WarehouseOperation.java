@@ -0,0 +1,18 @@
+package ggc;
+
+/**
+ * An operation on a warehouse, run by WarehouseManager as a read or a write.
+ *
+ * @param <T> result of the operation
+ * @param <E> exception the operation may throw
+ */
+@FunctionalInterface
+interface WarehouseOperation<T, E extends Exception> {
+
+  /**
+   * @param warehouse warehouse to operate on
+   * @return result of the operation
+   * @throws E
+   */
+  T apply(Warehouse warehouse) throws E;
+}
@@ -0,0 +1,29 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: an acquisition, including the notifications it emitted.
+ */
+@Name("ggc.Acquisition")
+@Label("Acquisition")
+@Category({ "GGC", "Warehouse" })
+public class AcquisitionEvent extends Event {
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Amount")
+  public int amount;
+
+  @Label("Price")
+  public float price;
+
+  @Label("Notifications Delivered")
+  @Description("Notifications delivered to partners' mailboxes")
+  public int notifications;
+
+}
@@ -0,0 +1,28 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: a breakdown of a derivative product into its components.
+ */
+@Name("ggc.Breakdown")
+@Label("Breakdown")
+@Category({ "GGC", "Warehouse" })
+public class BreakdownEvent extends Event {
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Amount")
+  public int amount;
+
+  @Label("Value")
+  public float value;
+
+  @Label("Batches Touched")
+  public long batchesTouched;
+
+}
@@ -0,0 +1,22 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: a batch compaction pass, merging batches of the same product, partner and price.
+ */
+@Name("ggc.Compaction")
+@Label("Batch Compaction")
+@Category({ "GGC", "Warehouse" })
+public class CompactionEvent extends Event {
+
+  @Label("Batches Merged")
+  public int merged;
+
+  @Label("Products Examined")
+  public int products;
+
+  @Label("Complete")
+  public boolean complete;
+
+}
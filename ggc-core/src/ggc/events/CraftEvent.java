@@ -0,0 +1,29 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: crafting of a derivative product from its recipe (nested crafts are separate events).
+ */
+@Name("ggc.Craft")
+@Label("Craft")
+@Category({ "GGC", "Warehouse" })
+public class CraftEvent extends Event {
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Quantity")
+  public int quantity;
+
+  @Label("Depth")
+  @Description("Level in the recipe tree (1 for the product being sold)")
+  public int depth;
+
+  @Label("Batches Touched")
+  public long batchesTouched;
+
+}
@@ -0,0 +1,19 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: advance of the warehouse's date, including the revaluation of unpaid sales.
+ */
+@Name("ggc.DateAdvance")
+@Label("Date Advance")
+@Category({ "GGC", "Warehouse" })
+public class DateAdvanceEvent extends Event {
+
+  @Label("Days")
+  public int days;
+
+  @Label("New Date")
+  public int date;
+
+}
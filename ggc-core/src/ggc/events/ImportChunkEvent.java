@@ -0,0 +1,22 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: a chunk of consecutive lines of an import file.
+ */
+@Name("ggc.ImportChunk")
+@Label("Import Chunk")
+@Category({ "GGC", "Warehouse" })
+public class ImportChunkEvent extends Event {
+
+  @Label("File")
+  public String file;
+
+  @Label("Chunk")
+  public int chunk;
+
+  @Label("Lines")
+  public int lines;
+
+}
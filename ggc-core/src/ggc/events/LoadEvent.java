@@ -0,0 +1,20 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: deserialization of the warehouse from a file.
+ */
+@Name("ggc.Load")
+@Label("Load")
+@Category({ "GGC", "Warehouse" })
+public class LoadEvent extends Event {
+
+  @Label("File")
+  public String file;
+
+  @Label("Bytes Read")
+  @DataAmount
+  public long bytes;
+
+}
@@ -0,0 +1,25 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: payment of a sale.
+ */
+@Name("ggc.Payment")
+@Label("Payment")
+@Category({ "GGC", "Warehouse" })
+public class PaymentEvent extends Event {
+
+  @Label("Transaction")
+  public int transaction;
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Value")
+  public float value;
+
+  @Label("Days Late")
+  public int daysLate;
+
+}
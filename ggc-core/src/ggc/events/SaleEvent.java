@@ -0,0 +1,36 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: a sale, including any crafting it required.
+ */
+@Name("ggc.Sale")
+@Label("Sale")
+@Category({ "GGC", "Warehouse" })
+public class SaleEvent extends Event {
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Amount")
+  public int amount;
+
+  @Label("Price")
+  public float price;
+
+  @Label("Units Crafted")
+  public int crafted;
+
+  @Label("Crafting Depth")
+  @Description("Deepest level of the recipe tree that had to be crafted (0 if none)")
+  public int craftDepth;
+
+  @Label("Batches Touched")
+  @Description("Batches consumed, partially or completely, including those of crafted components")
+  public long batchesTouched;
+
+}
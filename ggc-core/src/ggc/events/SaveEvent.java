@@ -0,0 +1,20 @@
+package ggc.events;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event: serialization of the warehouse to a file.
+ */
+@Name("ggc.Save")
+@Label("Save")
+@Category({ "GGC", "Warehouse" })
+public class SaveEvent extends Event {
+
+  @Label("File")
+  public String file;
+
+  @Label("Bytes Written")
+  @DataAmount
+  public long bytes;
+
+}
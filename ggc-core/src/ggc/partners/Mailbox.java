@@ -10,29 +10,73 @@ public class Mailbox implements Serializable{
     private static final long serialVersionUID = 202110262341L;
     private List<Product> _blockedProducts = new ArrayList<Product>();
     private List<Notification> _notifications = new ArrayList<Notification>();
+    private NotificationStation _station;
+    // Handles of the blocked products (built on first use)
+    private transient BitSet _blocked;
 
-    public void toggleBlockedProduct(Product product) {
-        if (!_blockedProducts.contains(product)) { _blockedProducts.add(product); }
+    void setStation(NotificationStation station) { _station = station; }
+
+    public synchronized void toggleBlockedProduct(Product product) {
+        if (!blocked().get(product.getHandle())) { _blockedProducts.add(product); }
         else { _blockedProducts.remove(product); }
+        _blocked.flip(product.getHandle());
+    }
+
+    private BitSet blocked() {
+        if (_blocked == null) {
+            _blocked = new BitSet();
+            for (Product p: _blockedProducts) { _blocked.set(p.getHandle()); }
+        }
+
+        return _blocked;
     }
 
-    public void receiveNotification(Notification notification) {
+    public synchronized boolean receiveNotification(Notification notification) {
         if (!checkIfProductBlocked(notification.getProduct())) {
             _notifications.add(notification);
+            return true;
         }
 
+        return false;
     }
 
-    private void clearNotifications() { _notifications.clear(); }
+    /**
+     * @@param notifications notifications to receive, in order
+     * @@param delivered count of notifications received, by method (updated)
+     */
+    public synchronized void receiveNotifications(List<Notification> notifications, Map<String, Long> delivered) {
+        for (Notification n: notifications) {
+            if (!checkIfProductBlocked(n.getProduct())) {
+                _notifications.add(n);
+                delivered.merge(n.getMethod(), 1L, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * @@param backlog count of notifications not yet read, by method (updated)
+     */
+    synchronized void countNotifications(Map<String, Long> backlog) {
+        for (Notification n: _notifications) {
+            backlog.merge(n.getMethod(), 1L, Long::sum);
+        }
+    }
+
+    private void clearNotifications() {
+        if (_station != null) {
+            for (Notification n: _notifications) { _station.updateBacklog(n.getMethod(), -1); }
+        }
+        _notifications.clear();
+    }
 
-    public ArrayList<Notification> listAllNotifications() {
+    public synchronized ArrayList<Notification> listAllNotifications() {
         ArrayList<Notification> notifications = new ArrayList<Notification>(_notifications);
         clearNotifications();
 
         return notifications;
     }
 
-    public ArrayList<Notification> listNotificationsByMethod(String method) {
+    public synchronized ArrayList<Notification> listNotificationsByMethod(String method) {
         ArrayList<Notification> newNotifications = new ArrayList<Notification>();
 
         for (Notification n: _notifications) {
@@ -47,6 +91,6 @@ public class Mailbox implements Serializable{
         return newNotifications;
     }
 
-    public boolean checkIfProductBlocked(Product product) { return (_blockedProducts.contains(product)); }
+    public synchronized boolean checkIfProductBlocked(Product product) { return blocked().get(product.getHandle()); }
 
 }
\ No newline at end of file
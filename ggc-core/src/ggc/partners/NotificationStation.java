@@ -2,6 +2,8 @@ package ggc.partners;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import ggc.exceptions.*;
 import ggc.products.*;
 
@@ -10,14 +12,77 @@ public class NotificationStation implements Serializable{
 
     private static final long serialVersionUID = 202110262316L;
 
-    private ArrayList<Mailbox> _mailboxes = new ArrayList<Mailbox>();
+    /** Mailboxes to deliver to (copied on write, since partners are rarely added) */
+    private List<Mailbox> _mailboxes = new CopyOnWriteArrayList<Mailbox>();
+    /** Notifications delivered but not yet read, by delivery method */
+    private Map<String, Long> _backlog = new ConcurrentHashMap<String, Long>();
 
-    public void addMailbox(Mailbox mailbox) { _mailboxes.add(mailbox); }
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _mailboxes = new CopyOnWriteArrayList<Mailbox>(_mailboxes);
+    }
+
+    /**
+     * @@return whether the backlog is kept (it is not in states saved before it was)
+     */
+    public boolean hasBacklog() { return _backlog != null; }
+
+    /**
+     * Counts the notifications waiting in the mailboxes, which are not yet
+     * linked back to the station either.
+     */
+    public void restoreBacklog() {
+        _backlog = new ConcurrentHashMap<String, Long>();
+
+        for (Mailbox m: _mailboxes) {
+            m.setStation(this);
+            m.countNotifications(_backlog);
+        }
+    }
+
+    public void addMailbox(Mailbox mailbox) {
+        _mailboxes.add(mailbox);
+        mailbox.setStation(this);
+    }
+
+    void updateBacklog(String method, long delta) { _backlog.merge(method, delta, Long::sum); }
+
+    public Map<String, Long> getBacklog() { return new TreeMap<String, Long>(_backlog); }
+
+    public int emitNotification(Notification notification) {
+        int delivered = 0;
 
-    public void emitNotification(Notification notification) {
         for (Mailbox m: _mailboxes) {
-            m.receiveNotification(notification);
+            if (m.receiveNotification(notification)) { delivered++; }
         }
+
+        updateBacklog(notification.getMethod(), delivered);
+
+        return delivered;
+    }
+
+    /**
+     * Delivers notifications in order, taking each mailbox once for all of them.
+     *
+     * @@param notifications notifications to deliver
+     * @@return number of deliveries
+     */
+    public int emitNotifications(List<Notification> notifications) {
+        if (notifications.isEmpty()) { return 0; }
+
+        Map<String, Long> delivered = new HashMap<String, Long>();
+
+        for (Mailbox m: _mailboxes) {
+            m.receiveNotifications(notifications, delivered);
+        }
+
+        int total = 0;
+        for (Map.Entry<String, Long> e: delivered.entrySet()) {
+            updateBacklog(e.getKey(), e.getValue());
+            total += e.getValue();
+        }
+
+        return total;
     }
 
 }
\ No newline at end of file
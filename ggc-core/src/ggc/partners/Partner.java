@@ -15,13 +15,19 @@ public class Partner implements Serializable, Comparable<Partner>{
     private String _name;
     private String _id;
     private String _address;
-    private Status _status = new StatusNormal(this);
+    // Status, as saved before tiers were shared (points and tier are kept in PartnerColumns)
+    private Status _status;
     private Mailbox _mailbox = new Mailbox();
-    private PriorityQueue<Batch> _batches = new PriorityQueue<Batch>();
+    // Batches, as saved before they moved to a BatchStore, and before they were kept in listing order
+    private PriorityQueue<Batch> _batches;
+    private BatchHeap _heap;
+    private transient BatchTree _tree;
 
     private ArrayList<Transaction> _sales = new ArrayList<Transaction>();
     private ArrayList<Transaction> _acquisitions = new ArrayList<Transaction>();
     private ArrayList<Transaction> _breakdowns = new ArrayList<Transaction>();
+    private PartnerColumns _columns;
+    private int _handle = -1;
 
     public Partner(String id, String name, String address) {
         _id = id;
@@ -42,12 +48,18 @@ public class Partner implements Serializable, Comparable<Partner>{
         return _address;
     }
 
+    public int getHandle() {
+        return _handle;
+    }
+
     public Status getStatus() {
-        return _status;
+        return Status.of(_columns.getTier(_handle));
     }
 
+    public Status getSavedStatus() { return _status; }
+
     public float getPoints() {
-        return _status.getPoints();
+        return _columns.getPoints(_handle);
     }
 
     public Mailbox getMailbox() {
@@ -58,7 +70,9 @@ public class Partner implements Serializable, Comparable<Partner>{
 
     public List<Notification> listAllNotificationsByMethod(String method) { return _mailbox.listNotificationsByMethod(method); }
 
-    public PriorityQueue<Batch> getBatches() { return _batches; }
+    public List<Batch> getBatches() { return _tree == null ? new ArrayList<Batch>() : _tree.list(); }
+
+    public PriorityQueue<Batch> getSavedBatches() { return _batches; }
 
     public ArrayList<Transaction> getSales() {
         ArrayList<Transaction> sales = new ArrayList<Transaction>(_sales); // Create a shallow copy
@@ -70,6 +84,18 @@ public class Partner implements Serializable, Comparable<Partner>{
 
     public ArrayList<Transaction> getAcquisitions() { return _acquisitions; }
 
+    public long getUnpaidSalesValue(Status status, int date) { // In Money's fixed point
+        long value = 0;
+
+        for (Transaction t: _sales) {
+            if (!t.paid()) {
+                value = Math.addExact(value, Money.of(((Sale) t).calculateRealValue(status, date)));
+            }
+        }
+
+        return value;
+    }
+
     public ArrayList<Transaction> getPaidSales() {
         ArrayList<Transaction> paidSales = new ArrayList<Transaction>();
 
@@ -95,8 +121,18 @@ public class Partner implements Serializable, Comparable<Partner>{
         _address = address;
     }
 
-    public void setStatus(Status status) {
-        _status = status;
+    public void setPoints(float points) {
+        _columns.setPoints(_handle, points);
+        _columns.setTier(_handle, Status.tierOf(points));
+    }
+
+    public void clearSavedStatus() {
+        _status = null;
+    }
+
+    void attach(PartnerColumns columns, int handle) {
+        _columns = columns;
+        _handle = handle;
     }
 
 
@@ -104,9 +140,24 @@ public class Partner implements Serializable, Comparable<Partner>{
         _mailbox = mailbox;
     }
 
-    public void addBatch(Batch batch) { _batches.add(batch); }
+    public void setBatchTree(BatchTree tree) {
+        _tree = tree;
+        _batches = null;
+        _heap = null;
+    }
 
-    public void removeBatch(Batch batch) { _batches.remove(batch); }
+    public void addBatch(Batch batch) {
+        if (_tree == null) {
+            _tree = new BatchTree(batch.getStore(), this);
+        }
+        _tree.add(batch.getRecord());
+    }
+
+    public void removeBatch(Batch batch) {
+        if (_tree != null) {
+            _tree.remove(batch.getRecord());
+        }
+    }
 
     public void addSale(Transaction sale) {
         _sales.add(sale);
@@ -150,7 +201,7 @@ public class Partner implements Serializable, Comparable<Partner>{
 
     @Override
     public String toString() {
-        return _id + "|" + _name + "|" + _address + "|" + _status + "|" + Math.round(getPoints()) + "|" + Math.round(getTotalBuyValue()) + "|" + Math.round(getTotalSellValue()) + "|" + Math.round(getTotalPaidValue());
+        return _id + "|" + _name + "|" + _address + "|" + getStatus() + "|" + Math.round(getPoints()) + "|" + Math.round(getTotalBuyValue()) + "|" + Math.round(getTotalSellValue()) + "|" + Math.round(getTotalPaidValue());
     }
 
     @Override
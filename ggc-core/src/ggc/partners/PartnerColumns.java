@@ -0,0 +1,74 @@
+package ggc.partners;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Partners by handle, with their points and status tier (Status.NORMAL,
+ * SELECTION or ELITE) kept in primitive columns indexed by handle. A partner
+ * gets the next handle (0, 1, 2, ...) when it is registered and keeps it for
+ * good.
+ *
+ * Columns are split in chunks that never move once allocated, as in
+ * ProductColumns. Each partner's values are guarded by the partner's lock.
+ */
+public class PartnerColumns implements Serializable {
+
+    private static final long serialVersionUID = 202610191201L;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Partner[][] _partners = new Partner[0][];
+    private volatile float[][] _points = new float[0][];
+    private volatile byte[][] _tier = new byte[0][];
+    private volatile int _size = 0;
+
+    /**
+     * Gives a partner the next handle. Its points and tier are taken from its
+     * saved status (only kept by partners saved before the columns).
+     *
+     * @@param partner partner to be registered
+     * @@return the partner's handle
+     */
+    public synchronized int register(Partner partner) {
+        int handle = _size;
+        int chunk = handle >>> CHUNK_BITS;
+
+        if (chunk == _partners.length) {
+            Partner[][] partners = Arrays.copyOf(_partners, chunk + 1);
+            float[][] points = Arrays.copyOf(_points, chunk + 1);
+            byte[][] tier = Arrays.copyOf(_tier, chunk + 1);
+            partners[chunk] = new Partner[CHUNK_SIZE];
+            points[chunk] = new float[CHUNK_SIZE];
+            tier[chunk] = new byte[CHUNK_SIZE];
+            _points = points;
+            _tier = tier;
+            _partners = partners;
+        }
+
+        _partners[chunk][handle & CHUNK_MASK] = partner;
+        Status status = partner.getSavedStatus();
+        if (status != null) {
+            _points[chunk][handle & CHUNK_MASK] = status.getSavedPoints();
+            _tier[chunk][handle & CHUNK_MASK] = (byte) status.getTier();
+        }
+        partner.attach(this, handle);
+        _size = handle + 1;
+
+        return handle;
+    }
+
+    public int size() { return _size; }
+
+    public Partner get(int handle) { return _partners[handle >>> CHUNK_BITS][handle & CHUNK_MASK]; }
+
+    public float getPoints(int handle) { return _points[handle >>> CHUNK_BITS][handle & CHUNK_MASK]; }
+
+    public void setPoints(int handle, float points) { _points[handle >>> CHUNK_BITS][handle & CHUNK_MASK] = points; }
+
+    public int getTier(int handle) { return _tier[handle >>> CHUNK_BITS][handle & CHUNK_MASK]; }
+
+    public void setTier(int handle, int tier) { _tier[handle >>> CHUNK_BITS][handle & CHUNK_MASK] = (byte) tier; }
+}
@@ -2,51 +2,62 @@ package ggc.partners;
 import java.io.*;
 import java.util.*;
 import ggc.partners.Partner;
-import ggc.products.Product;
-import ggc.transactions.Transaction;
 
 public abstract class Status implements Serializable {
 
     private static final long serialVersionUID = 202111081415L;
-    private Partner _partner;
-    private float _points;
 
-    public Status(Partner partner) {
-        _partner = partner;
-        _points = 0;
-    }
+    public static final int NORMAL = 0;
+    public static final int SELECTION = 1;
+    public static final int ELITE = 2;
 
-    public Status(Partner partner, float points) {
-        _partner = partner;
-        _points = points;
-    }
+    // Partner and points, as saved before tiers were shared (see Partner.getStatus)
+    private Partner _partner;
+    private float _points;
 
-    public float getPoints() {
+    float getSavedPoints() {
         return _points;
     }
 
-    public void setPoints(float points) {
-        _points = points;
-
-        if (_points >= 25000) { // If score >= 25000, new status is ELITE
-            _partner.setStatus(new StatusElite(_partner, points));
-        } else if (_points >= 2000) { // If score >= 2000, new status is SELECTION
-            _partner.setStatus(new StatusSelection(_partner, points));
-        } else { // Else, new status is NORMAL
-            _partner.setStatus(new StatusNormal(_partner, points));
+    /**
+     * @@param tier NORMAL, SELECTION or ELITE
+     * @@return the status of that tier
+     */
+    public static Status of(int tier) {
+        switch (tier) {
+            case (ELITE):
+                return StatusElite.INSTANCE;
+            case (SELECTION):
+                return StatusSelection.INSTANCE;
         }
-    }
 
-    public void addPoints(float points) {
-        setPoints(getPoints() + points);
+        return StatusNormal.INSTANCE;
     }
 
-    public Partner getPartner() {
-        return _partner;
+    /**
+     * @@param points a partner's points
+     * @@return the tier a partner with those points is in
+     */
+    public static int tierOf(float points) {
+        if (points >= 25000) { // If score >= 25000, new status is ELITE
+            return ELITE;
+        } else if (points >= 2000) { // If score >= 2000, new status is SELECTION
+            return SELECTION;
+        }
+        return NORMAL; // Else, new status is NORMAL
     }
 
+    public abstract int getTier();
+
     public abstract float calculateRealValue(float baseValue, int period, int dayDifference);
 
-    public abstract void updatePoints(Transaction transaction);
+    /**
+     * @@param points the partner's points
+     * @@param realValue value paid for a sale
+     * @@param paidDate date the sale was paid
+     * @@param deadline the sale's deadline
+     * @@return the partner's points after paying the sale
+     */
+    public abstract float updatePoints(float points, float realValue, int paidDate, int deadline);
 
 }
\ No newline at end of file
@@ -1,22 +1,15 @@
 package ggc.partners;
 import java.io.*;
 import java.util.*;
-import ggc.partners.Partner;
-import ggc.products.Product;
-import ggc.transactions.Transaction;
 
 public class StatusElite extends Status implements Serializable {
 
     private static final long serialVersionUID = 202111081421L;
     private static final String str = "ELITE";
 
-    public StatusElite(Partner partner) {
-        super(partner);
-    }
+    static final StatusElite INSTANCE = new StatusElite();
 
-    public StatusElite(Partner partner, float points) {
-        super(partner, points);
-    }
+    private StatusElite() {}
 
     public float calculateRealValue(float baseValue, int period, int dayDifference) {
         if (baseValue < 0) {
@@ -36,20 +29,19 @@ public class StatusElite extends Status implements Serializable {
         return (baseValue);
     }
 
-    public void updatePoints(Transaction transaction) {
-        if (transaction.getRealValue() >= 0) {
-            float newPoints;
-
-            if (transaction.getPaidDate() <= transaction.getDeadline() + 15) { // 15 day tolerance
-                newPoints = (getPoints() + transaction.getRealValue() * 10);
-            } else {
-                newPoints = (getPoints() * 0.25f);
-            }
-
-            setPoints(newPoints);
+    public float updatePoints(float points, float realValue, int paidDate, int deadline) {
+        if (realValue < 0) {
+            return points;
         }
+        if (paidDate <= deadline + 15) { // 15 day tolerance
+            return points + realValue * 10;
+        }
+
+        return points * 0.25f;
     }
 
+    public int getTier() { return ELITE; }
+
     @Override
     public String toString() { return str; }
 }
\ No newline at end of file
@@ -1,22 +1,15 @@
 package ggc.partners;
 import java.io.*;
 import java.util.*;
-import ggc.partners.Partner;
-import ggc.products.Product;
-import ggc.transactions.Transaction;
 
 public class StatusNormal extends Status implements Serializable {
 
     private static final long serialVersionUID = 202111081418L;
     private static final String str = "NORMAL";
 
-    public StatusNormal(Partner partner) {
-        super(partner);
-    }
+    static final StatusNormal INSTANCE = new StatusNormal();
 
-    public StatusNormal(Partner partner, float points) {
-        super(partner, points);
-    }
+    private StatusNormal() {}
 
     public float calculateRealValue(float baseValue, int period, int dayDifference) {
         if (baseValue < 0) {
@@ -36,20 +29,19 @@ public class StatusNormal extends Status implements Serializable {
         return (baseValue);
     }
 
-    public void updatePoints(Transaction transaction) {
-        if (transaction.getRealValue() >= 0) {
-            float newPoints;
-
-            if (transaction.getPaidDate() <= transaction.getDeadline()) {
-                newPoints = (getPoints() + transaction.getRealValue() * 10);
-            } else {
-                newPoints = 0;
-            }
-
-            setPoints(newPoints);
+    public float updatePoints(float points, float realValue, int paidDate, int deadline) {
+        if (realValue < 0) {
+            return points;
         }
+        if (paidDate <= deadline) {
+            return points + realValue * 10;
+        }
+
+        return 0;
     }
 
+    public int getTier() { return NORMAL; }
+
     @Override
     public String toString() { return str; }
 }
\ No newline at end of file
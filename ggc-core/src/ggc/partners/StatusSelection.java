@@ -1,22 +1,15 @@
 package ggc.partners;
 import java.io.*;
 import java.util.*;
-import ggc.partners.Partner;
-import ggc.products.Product;
-import ggc.transactions.Transaction;
 
 public class StatusSelection extends Status implements Serializable {
 
     private static final long serialVersionUID = 202111081425L;
     private static final String str = "SELECTION";
 
-    public StatusSelection(Partner partner) {
-        super(partner);
-    }
+    static final StatusSelection INSTANCE = new StatusSelection();
 
-    public StatusSelection(Partner partner, float points) {
-        super(partner, points);
-    }
+    private StatusSelection() {}
 
     public float calculateRealValue(float baseValue, int period, int dayDifference) {
         if (baseValue < 0) {
@@ -38,20 +31,19 @@ public class StatusSelection extends Status implements Serializable {
         return (baseValue);
     }
 
-    public void updatePoints(Transaction transaction) {
-        if (transaction.getRealValue() >= 0) {
-            float newPoints;
-
-            if (transaction.getPaidDate() <= transaction.getDeadline() + 2) { // 2 day tolerance
-                newPoints = (getPoints() + transaction.getRealValue() * 10);
-            } else {
-                newPoints = (getPoints() * 0.1f);
-            }
-
-            setPoints(newPoints);
+    public float updatePoints(float points, float realValue, int paidDate, int deadline) {
+        if (realValue < 0) {
+            return points;
         }
+        if (paidDate <= deadline + 2) { // 2 day tolerance
+            return points + realValue * 10;
+        }
+
+        return points * 0.1f;
     }
 
+    public int getTier() { return SELECTION; }
+
     @Override
     public String toString() { return str; }
 }
\ No newline at end of file
@@ -15,6 +15,9 @@ public class Batch implements Serializable, Comparable<Batch>{
     private Product _product;
     private int _stock;
     private Partner _partner;
+    // Record holding the batch, if it is in a BatchStore (the fields above then copy it, as it was when the batch was viewed)
+    private transient BatchStore _store;
+    private transient int _record = -1;
 
     public Batch(Product product, Partner partner, float price, int stock) {
         _price = price;
@@ -23,6 +26,16 @@ public class Batch implements Serializable, Comparable<Batch>{
         _partner = partner;
     }
 
+    Batch(BatchStore store, int record) {
+        this(store, record, store.getProduct(record), store.getPartner(record), store.getPrice(record), store.getStock(record));
+    }
+
+    Batch(BatchStore store, int record, Product product, Partner partner, float price, int stock) {
+        this(product, partner, price, stock);
+        _store = store;
+        _record = record;
+    }
+
     // Getters
     public float getPrice() {
         return _price;
@@ -39,35 +52,85 @@ public class Batch implements Serializable, Comparable<Batch>{
         return _partner;
     }
 
+    public BatchStore getStore() { return _store; }
+
+    public int getRecord() { return _record; }
+
     // Setters
     public void setPrice(float price) {
+        detach();
         _price = price;
+        if (_store != null) { _store.setPrice(_record, price); }
+        reattach();
     }
 
     public void setProduct(Product product) {
+        detach();
+        if (_store != null) {
+            _product.removeBatch(this);
+            _store.setProduct(_record, product);
+            product.addBatch(this);
+        }
         _product = product;
+        reattach();
     }
 
     public void setStock(int stock) {
+        detach();
         _stock = stock;
+        if (_store != null) { _store.setStock(_record, stock); }
+        reattach();
     }
 
     public void setPartner(Partner partner) {
+        detach();
         _partner = partner;
+        if (_store != null) { _store.setPartner(_record, partner); }
+        reattach();
+    }
+
+    // A stored batch's product, price and stock place it among its partner's batches: it is taken out before they change
+    private void detach() {
+        if (_store != null) { _partner.removeBatch(this); }
+    }
+
+    // ... and put back after, when it also moves to its new place in its product's heap
+    private void reattach() {
+        if (_store != null) {
+            _product.updateBatch(this);
+            _partner.addBatch(this);
+        }
     }
 
     public void destroy() {
         _partner.removeBatch(this);
         _product.removeBatch(this);
+        if (_store != null) {
+            _store.free(_record);
+        }
     }
 
     public void addStock(int stock) {
-        _stock += stock;
+        setStock(_stock + stock);
         if (_stock <= 0) {
             destroy();
         }
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (_store == null || !(o instanceof Batch)) {
+            return this == o;
+        }
+        Batch batch = (Batch) o;
+        return _store == batch._store && _record == batch._record;
+    }
+
+    @Override
+    public int hashCode() {
+        return _store == null ? System.identityHashCode(this) : _record;
+    }
+
     @Override
     public String toString() {
         return getProduct().getId() + "|" + getPartner().getId() + "|" + Math.round(getPrice()) + "|" + getStock();
@@ -0,0 +1,272 @@
+package ggc.products;
+
+import java.io.*;
+import java.text.Collator;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * A product's batches, as a binary heap of BatchStore records ordered by
+ * price, then in listing order (by partner, as ids collate, then price,
+ * then stock, and record between batches with all three equal), so the
+ * cheapest batch, first in listing order among the cheapest, is at the
+ * top. Heaps saved before they were ordered by price first (and the
+ * PriorityQueue<Batch> they replace) are put back in order when read.
+ *
+ * The heap is indexed: each record keeps its position in the heap, so
+ * removing a batch, or moving it after its stock or price changes, takes
+ * O(log n) instead of a scan.
+ */
+public class BatchHeap implements Serializable {
+
+    private static final long serialVersionUID = 202610191203L;
+
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(() -> Collator.getInstance(Locale.getDefault()));
+
+    private final BatchStore _store;
+    private int[] _records = new int[11];
+    private int _size = 0;
+
+    /**
+     * @@param store store holding the records
+     */
+    public BatchHeap(BatchStore store) {
+        _store = store;
+    }
+
+    /**
+     * @@param store store holding the records
+     * @@param records records of batches, in a PriorityQueue's order
+     */
+    public BatchHeap(BatchStore store, int[] records) {
+        _store = store;
+        _records = Arrays.copyOf(records, Math.max(records.length, 1));
+        _size = records.length;
+        reindex();
+    }
+
+    /**
+     * Records each batch's position in the heap (positions are not saved),
+     * putting the batches back in order if they are not.
+     */
+    public void reindex() {
+        for (int i = 0; i < _size; i++) {
+            _store.setHeapIndex(_records[i], i);
+        }
+        for (int i = (_size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, _records[i]);
+        }
+    }
+
+    public int size() { return _size; }
+
+    /**
+     * @@return record of the cheapest batch (first in listing order among
+     * the cheapest), or -1 if there are none
+     */
+    public int peek() { return _size > 0 ? _records[0] : -1; }
+
+    /**
+     * @@param i position in the heap (below size)
+     * @@return the record in that position
+     */
+    public int get(int i) { return _records[i]; }
+
+    /**
+     * Finds the first batch, cheapest first, whose record passes a test.
+     * Only the batches before it, and the ones right under them in the
+     * heap, are looked at.
+     *
+     * @@param test test on records
+     * @@return the batch, or null if none passes
+     */
+    public Batch first(IntPredicate test) {
+        if (_size == 0) {
+            return null;
+        }
+        if (test.test(_records[0])) {
+            return _store.view(_records[0]);
+        }
+
+        // A heap's children never come before their parent, so the positions
+        // come out of this queue in order
+        PriorityQueue<Integer> positions = new PriorityQueue<Integer>((i, j) -> compare(_records[i], _records[j]));
+        for (int i = 0; ; i = positions.poll()) {
+            if (test.test(_records[i])) {
+                return _store.view(_records[i]);
+            }
+            if (2 * i + 1 < _size) { positions.add(2 * i + 1); }
+            if (2 * i + 2 < _size) { positions.add(2 * i + 2); }
+            if (positions.isEmpty()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @@return the heap's records, in heap order
+     */
+    public int[] toArray() { return Arrays.copyOf(_records, _size); }
+
+    /**
+     * @@return the batches, in heap order
+     */
+    public List<Batch> toList() {
+        List<Batch> batches = new ArrayList<Batch>(_size);
+
+        for (int i = 0; i < _size; i++) {
+            batches.add(_store.view(_records[i]));
+        }
+
+        return batches;
+    }
+
+    /**
+     * @@return the batches, in listing order
+     */
+    public List<Batch> toSortedList() {
+        Integer[] records = new Integer[_size];
+        for (int i = 0; i < _size; i++) {
+            records[i] = _records[i];
+        }
+        Arrays.sort(records, this::compareListing);
+
+        List<Batch> batches = new ArrayList<Batch>(_size);
+        for (int record: records) {
+            batches.add(_store.view(record));
+        }
+
+        return batches;
+    }
+
+    /**
+     * Orders records by price, then in listing order.
+     */
+    private int compare(int a, int b) {
+        float price = _store.getPrice(a);
+        if (price != _store.getPrice(b)) {
+            return price < _store.getPrice(b) ? -1 : 1;
+        }
+
+        return compareListing(a, b);
+    }
+
+    /**
+     * Orders records in listing order.
+     */
+    private int compareListing(int a, int b) {
+        // Batches of the same product (or partner) need no collating
+        if (_store.getProductHandle(a) != _store.getProductHandle(b)) {
+            int signProduct = COLLATOR.get().compare(_store.getProduct(a).getId(), _store.getProduct(b).getId());
+            if (signProduct != 0) return signProduct;
+        }
+        if (_store.getPartnerHandle(a) != _store.getPartnerHandle(b)) {
+            int signPartner = COLLATOR.get().compare(_store.getPartner(a).getId(), _store.getPartner(b).getId());
+            if (signPartner != 0) return signPartner;
+        }
+
+        float price = _store.getPrice(a);
+        if (price != _store.getPrice(b)) return Float.compare(price, _store.getPrice(b));
+        int stock = _store.getStock(a);
+        if (stock != _store.getStock(b)) return Integer.compare(stock, _store.getStock(b));
+        return Integer.compare(a, b);
+    }
+
+    public void add(int record) {
+        int i = _size;
+        if (i >= _records.length) {
+            _records = Arrays.copyOf(_records, i < 64 ? i + i + 2 : i + (i >> 1));
+        }
+        siftUp(i, record);
+        _size = i + 1;
+    }
+
+    /**
+     * @@param record record to be removed
+     * @@return whether the record was in the heap
+     */
+    public boolean remove(int record) {
+        int i = indexOf(record);
+
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Moves a batch whose stock or price changed to its place in the heap.
+     *
+     * @@param record record whose batch changed
+     */
+    public void update(int record) {
+        int i = indexOf(record);
+
+        if (i >= 0) {
+            siftDown(i, record);
+            if (_records[i] == record) {
+                siftUp(i, record);
+            }
+        }
+    }
+
+    private int indexOf(int record) {
+        int i = _store.getHeapIndex(record);
+        return i >= 0 && i < _size && _records[i] == record ? i : -1;
+    }
+
+    private void removeAt(int i) {
+        int s = --_size;
+
+        if (s != i) {
+            int moved = _records[s];
+            siftDown(i, moved);
+            if (_records[i] == moved) {
+                siftUp(i, moved);
+            }
+        }
+    }
+
+    private void siftUp(int k, int record) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int e = _records[parent];
+            if (compare(record, e) >= 0) {
+                break;
+            }
+            place(k, e);
+            k = parent;
+        }
+        place(k, record);
+    }
+
+    private void siftDown(int k, int record) {
+        int half = _size >>> 1;
+
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int c = _records[child];
+            int right = child + 1;
+            if (right < _size && compare(c, _records[right]) > 0) {
+                c = _records[child = right];
+            }
+            if (compare(record, c) <= 0) {
+                break;
+            }
+            place(k, c);
+            k = child;
+        }
+        place(k, record);
+    }
+
+    private void place(int i, int record) {
+        _records[i] = record;
+        _store.setHeapIndex(record, i);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        _records = Arrays.copyOf(_records, Math.max(_size, 1));
+        out.defaultWriteObject();
+    }
+}
@@ -0,0 +1,195 @@
+package ggc.products;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import ggc.partners.*;
+
+/**
+ * The batches of a warehouse, as fixed-width records: product handle,
+ * partner handle, price and stock, and the batch's position in its
+ * product's heap (20 bytes). Products and partners keep record numbers
+ * (see BatchHeap and BatchTree), and Batch objects are only made to hand
+ * batches out (see view), so the inventory is not a graph of objects the
+ * garbage collector has to trace. Heap positions are not saved: the heaps
+ * put them back (see BatchHeap.reindex).
+ *
+ * Records live in chunks of 65536 that never move once allocated. With
+ * -Doffheap=true the chunks are direct buffers, outside the Java heap.
+ * Freed records are reused: the free list runs through their stock field,
+ * and a freed record's product handle is -1.
+ *
+ * Allocating and freeing records is synchronized; reading and writing a
+ * record's price and stock are guarded by its product's lock.
+ */
+public class BatchStore implements Serializable {
+
+    private static final long serialVersionUID = 202610191202L;
+
+    private static final int RECORD_SIZE = 20;
+    private static final int SAVED_SIZE = 16;
+    private static final int PRODUCT = 0;
+    private static final int PARTNER = 4;
+    private static final int PRICE = 8;
+    private static final int STOCK = 12;
+    private static final int HEAP_INDEX = 16;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final ProductColumns _products;
+    private final PartnerColumns _partners;
+    private transient volatile ByteBuffer[] _chunks;
+    private transient boolean _direct;
+    // Records ever allocated (free or not), first free record and number of live records
+    private int _size = 0;
+    private int _free = -1;
+    private int _live = 0;
+
+    /**
+     * @@param products products whose handles the records hold
+     * @@param partners partners whose handles the records hold
+     */
+    public BatchStore(ProductColumns products, PartnerColumns partners) {
+        _products = products;
+        _partners = partners;
+        init();
+    }
+
+    private void init() {
+        _direct = Boolean.getBoolean("offheap");
+        _chunks = new ByteBuffer[0];
+    }
+
+    private ByteBuffer newChunk() {
+        int bytes = RECORD_SIZE << CHUNK_BITS;
+        return (_direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @@return whether records are kept outside the Java heap
+     */
+    public boolean isDirect() { return _direct; }
+
+    /**
+     * @@return number of live records
+     */
+    public synchronized int size() { return _live; }
+
+    /**
+     * @@return number of records ever allocated, free or not (live records are below it)
+     */
+    public synchronized int capacity() { return _size; }
+
+    /**
+     * @@param product batch's product
+     * @@param partner batch's partner
+     * @@param price batch's price
+     * @@param stock batch's stock
+     * @@return the new record
+     */
+    public synchronized int allocate(Product product, Partner partner, float price, int stock) {
+        int record;
+
+        if (_free >= 0) {
+            record = _free;
+            _free = getStock(record);
+        } else {
+            record = _size++;
+            if ((record >>> CHUNK_BITS) == _chunks.length) {
+                ByteBuffer[] chunks = Arrays.copyOf(_chunks, _chunks.length + 1);
+                chunks[_chunks.length] = newChunk();
+                _chunks = chunks;
+            }
+        }
+
+        ByteBuffer chunk = chunk(record);
+        int at = offset(record);
+        chunk.putInt(at + PRODUCT, product.getHandle());
+        chunk.putInt(at + PARTNER, partner.getHandle());
+        chunk.putFloat(at + PRICE, price);
+        chunk.putInt(at + STOCK, stock);
+        _live++;
+
+        return record;
+    }
+
+    /**
+     * @@param record record to be reused
+     */
+    public synchronized void free(int record) {
+        chunk(record).putInt(offset(record) + PRODUCT, -1);
+        setStock(record, _free);
+        _free = record;
+        _live--;
+    }
+
+    private ByteBuffer chunk(int record) { return _chunks[record >>> CHUNK_BITS]; }
+
+    private static int offset(int record) { return (record & CHUNK_MASK) * RECORD_SIZE; }
+
+    public boolean isLive(int record) { return chunk(record).getInt(offset(record) + PRODUCT) >= 0; }
+
+    public int getProductHandle(int record) { return chunk(record).getInt(offset(record) + PRODUCT); }
+
+    public int getPartnerHandle(int record) { return chunk(record).getInt(offset(record) + PARTNER); }
+
+    public Product getProduct(int record) { return _products.get(getProductHandle(record)); }
+
+    public Partner getPartner(int record) { return _partners.get(getPartnerHandle(record)); }
+
+    public void setProduct(int record, Product product) { chunk(record).putInt(offset(record) + PRODUCT, product.getHandle()); }
+
+    public void setPartner(int record, Partner partner) { chunk(record).putInt(offset(record) + PARTNER, partner.getHandle()); }
+
+    public float getPrice(int record) { return chunk(record).getFloat(offset(record) + PRICE); }
+
+    public void setPrice(int record, float price) { chunk(record).putFloat(offset(record) + PRICE, price); }
+
+    public int getStock(int record) { return chunk(record).getInt(offset(record) + STOCK); }
+
+    public void setStock(int record, int stock) { chunk(record).putInt(offset(record) + STOCK, stock); }
+
+    /**
+     * @@param record a live record
+     * @@return the record's position in its product's heap
+     */
+    public int getHeapIndex(int record) { return chunk(record).getInt(offset(record) + HEAP_INDEX); }
+
+    public void setHeapIndex(int record, int index) { chunk(record).putInt(offset(record) + HEAP_INDEX, index); }
+
+    public ProductColumns getProductColumns() { return _products; }
+
+    /**
+     * @@param record a live record
+     * @@return the batch the record holds
+     */
+    public Batch view(int record) { return new Batch(this, record); }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        byte[] bytes = new byte[SAVED_SIZE];
+        for (int r = 0; r < _size; r++) {
+            chunk(r).get(offset(r), bytes);
+            out.write(bytes);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+
+        int chunks = (_size + CHUNK_MASK) >>> CHUNK_BITS;
+        _chunks = new ByteBuffer[chunks];
+        for (int c = 0; c < chunks; c++) {
+            _chunks[c] = newChunk();
+        }
+
+        byte[] bytes = new byte[SAVED_SIZE];
+        for (int r = 0; r < _size; r++) {
+            in.readFully(bytes);
+            chunk(r).put(offset(r), bytes);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package ggc.products;
+
+import java.text.Collator;
+import java.util.*;
+import ggc.partners.*;
+
+/**
+ * A partner's batches, kept in listing order: by product (as ids collate),
+ * then price, then stock (and record, between batches with all three
+ * equal). The tree is a treap whose priorities come from the records, and
+ * it is persistent: adding or removing a batch copies the path to it and
+ * publishes a new root, leaving earlier versions as they were. A listing
+ * (see list) takes the current root and walks it, without locking, copying
+ * or sorting; each node holds the batch's numbers as they were when it was
+ * added, so the listing reads nothing that may change under it.
+ *
+ * Adding and removing are guarded by the partner's lock. A batch's product,
+ * price and stock place it in the tree, so the batch is taken out before
+ * one of them changes, and put back after (see Batch).
+ */
+public class BatchTree {
+
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(() -> Collator.getInstance(Locale.getDefault()));
+
+    private static final class Node {
+        final int record;
+        final int product;
+        final float price;
+        final int stock;
+        final Node left;
+        final Node right;
+        final int size;
+
+        Node(int record, int product, float price, int stock, Node left, Node right) {
+            this.record = record;
+            this.product = product;
+            this.price = price;
+            this.stock = stock;
+            this.left = left;
+            this.right = right;
+            size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        Node with(Node l, Node r) {
+            return l == left && r == right ? this : new Node(record, product, price, stock, l, r);
+        }
+    }
+
+    private final BatchStore _store;
+    private final Partner _partner;
+    private volatile Node _root;
+
+    /**
+     * @@param store store holding the records
+     * @@param partner partner whose batches the tree holds
+     */
+    public BatchTree(BatchStore store, Partner partner) {
+        _store = store;
+        _partner = partner;
+    }
+
+    private static int sizeOf(Node node) { return node == null ? 0 : node.size; }
+
+    // Distinct records get distinct priorities (the mix is a bijection)
+    private static int priority(Node node) {
+        int h = node.record * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private int compare(Node a, Node b) {
+        if (a.product != b.product) {
+            ProductColumns products = _store.getProductColumns();
+            int signProduct = COLLATOR.get().compare(products.get(a.product).getId(), products.get(b.product).getId());
+            if (signProduct != 0) return signProduct;
+        }
+        if (a.price != b.price) return Float.compare(a.price, b.price);
+        if (a.stock != b.stock) return Integer.compare(a.stock, b.stock);
+        return Integer.compare(a.record, b.record);
+    }
+
+    private Node leaf(int record) {
+        return new Node(record, _store.getProductHandle(record), _store.getPrice(record), _store.getStock(record), null, null);
+    }
+
+    public int size() { return sizeOf(_root); }
+
+    /**
+     * @@param record record of a batch of the partner, not in the tree
+     */
+    public void add(int record) {
+        _root = insert(_root, leaf(record));
+    }
+
+    /**
+     * @@param record record of a batch in the tree, with the numbers it was added with
+     * @@return whether the record was in the tree
+     */
+    public boolean remove(int record) {
+        Node root = _root;
+        Node removed = delete(root, leaf(record));
+
+        if (removed == root) {
+            return false;
+        }
+        _root = removed;
+        return true;
+    }
+
+    private Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (priority(node) > priority(tree)) {
+            Node[] parts = split(tree, node);
+            return node.with(parts[0], parts[1]);
+        }
+        if (compare(node, tree) < 0) {
+            return tree.with(insert(tree.left, node), tree.right);
+        }
+        return tree.with(tree.left, insert(tree.right, node));
+    }
+
+    // The nodes of a tree before and after a node that is not in it
+    private Node[] split(Node tree, Node node) {
+        if (tree == null) {
+            return new Node[] { null, null };
+        }
+        if (compare(tree, node) < 0) {
+            Node[] parts = split(tree.right, node);
+            return new Node[] { tree.with(tree.left, parts[0]), parts[1] };
+        }
+        Node[] parts = split(tree.left, node);
+        return new Node[] { parts[0], tree.with(parts[1], tree.right) };
+    }
+
+    private Node delete(Node tree, Node node) {
+        if (tree == null) {
+            return null;
+        }
+        int sign = compare(node, tree);
+        if (sign == 0) {
+            return merge(tree.left, tree.right);
+        }
+        if (sign < 0) {
+            return tree.with(delete(tree.left, node), tree.right);
+        }
+        return tree.with(tree.left, delete(tree.right, node));
+    }
+
+    // Joins two trees, every node of the first coming before every node of the second
+    private Node merge(Node first, Node second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        if (priority(first) > priority(second)) {
+            return first.with(first.left, merge(first.right, second));
+        }
+        return second.with(merge(first, second.left), second.right);
+    }
+
+    /**
+     * @@return the batches as they are now, in listing order (later changes do not show)
+     */
+    public List<Batch> list() {
+        return new Listing(_root);
+    }
+
+    private class Listing extends AbstractList<Batch> implements RandomAccess {
+
+        private final Node _top;
+
+        Listing(Node top) {
+            _top = top;
+        }
+
+        private Batch view(Node node) {
+            return new Batch(_store, node.record, _store.getProductColumns().get(node.product), _partner, node.price, node.stock);
+        }
+
+        @Override
+        public int size() { return sizeOf(_top); }
+
+        @Override
+        public Batch get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            Node node = _top;
+            while (index != sizeOf(node.left)) {
+                if (index < sizeOf(node.left)) {
+                    node = node.left;
+                } else {
+                    index -= sizeOf(node.left) + 1;
+                    node = node.right;
+                }
+            }
+            return view(node);
+        }
+
+        @Override
+        public Iterator<Batch> iterator() {
+            return new Iterator<Batch>() {
+                private final ArrayDeque<Node> _path = new ArrayDeque<Node>();
+                { descend(_top); }
+
+                private void descend(Node node) {
+                    for (; node != null; node = node.left) {
+                        _path.push(node);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() { return !_path.isEmpty(); }
+
+                @Override
+                public Batch next() {
+                    if (_path.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    Node node = _path.pop();
+                    descend(node.right);
+                    return view(node);
+                }
+            };
+        }
+    }
+}
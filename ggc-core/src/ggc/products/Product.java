@@ -12,26 +12,43 @@ public abstract class Product implements Serializable, Comparable<Product>{
     private static final long serialVersionUID = 202110262343L;
 
     private String _id;
+    // Maximum price and stock, as saved before they moved to ProductColumns
     private float _maxPrice = 0;
     private int _stock = 0;
-    private PriorityQueue<Batch> _batches = new PriorityQueue<Batch>();
+    // Batches, as saved before they moved to a BatchStore
+    private PriorityQueue<Batch> _batches;
+    private BatchHeap _heap;
+    private ProductColumns _columns;
+    private int _handle = -1;
 
     // Getters
     public String getId() {
         return _id;
     }
 
+    public int getHandle() {
+        return _handle;
+    }
+
     public float getMaxPrice() {
-        return _maxPrice;
+        return _columns.getMaxPrice(_handle);
     }
 
     public int getStock() {
-        return _stock;
+        return _columns.getStock(_handle);
     }
 
+    float getSavedMaxPrice() { return _maxPrice; }
+
+    int getSavedStock() { return _stock; }
+
     public Recipe getRecipe() { return null; }
 
-    public PriorityQueue<Batch> getBatches() { return _batches; }
+    public List<Batch> getBatches() { return _heap == null ? new ArrayList<Batch>() : _heap.toList(); }
+
+    public BatchHeap getBatchHeap() { return _heap; }
+
+    public PriorityQueue<Batch> getSavedBatches() { return _batches; }
 
     public abstract int getDeadline();
 
@@ -41,22 +58,49 @@ public abstract class Product implements Serializable, Comparable<Product>{
     }
 
     public void setMaxPrice(float maxPrice) {
-        _maxPrice = maxPrice;
+        _columns.setMaxPrice(_handle, maxPrice);
     }
 
     public void setStock(int stock) {
-        _stock = stock;
+        _columns.setStock(_handle, stock);
+    }
+
+    void attach(ProductColumns columns, int handle) {
+        _columns = columns;
+        _handle = handle;
+        _maxPrice = 0;
+        _stock = 0;
     }
 
     public abstract boolean enoughStock(int amount);
 
     public void addStock(int stock) {
-        _stock += stock;
+        _columns.addStock(_handle, stock);
+    }
+
+    public void setBatchHeap(BatchHeap heap) {
+        _heap = heap;
+        _batches = null;
     }
 
-    public void addBatch(Batch batch) { _batches.add(batch); }
+    public void addBatch(Batch batch) {
+        if (_heap == null) {
+            _heap = new BatchHeap(batch.getStore());
+        }
+        _heap.add(batch.getRecord());
+    }
 
-    public void removeBatch(Batch batch) { _batches.remove(batch); }
+    public void removeBatch(Batch batch) {
+        if (_heap != null) {
+            _heap.remove(batch.getRecord());
+        }
+    }
+
+    public void updateBatch(Batch batch) {
+        if (_heap != null) {
+            _heap.update(batch.getRecord());
+        }
+    }
 
     public abstract void throwFirstMissingSimpleProduct(int amount) throws NotEnoughProductsException;
 
@@ -0,0 +1,74 @@
+package ggc.products;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Products by handle, with their stock and maximum price kept in primitive
+ * columns indexed by handle. A product gets the next handle (0, 1, 2, ...)
+ * when it is registered and keeps it for good.
+ *
+ * Columns are split in chunks that never move once allocated: registering a
+ * product (which may add a chunk) only copies the chunk directories, so it
+ * never loses an update made meanwhile to another product's stock. Each
+ * product's values are guarded by the product's lock, like its batches.
+ */
+public class ProductColumns implements Serializable {
+
+    private static final long serialVersionUID = 202610191200L;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Product[][] _products = new Product[0][];
+    private volatile int[][] _stock = new int[0][];
+    private volatile float[][] _maxPrice = new float[0][];
+    private volatile int _size = 0;
+
+    /**
+     * Gives a product the next handle. Its stock and maximum price are taken
+     * from the product (only non-zero for products saved before the columns).
+     *
+     * @@param product product to be registered
+     * @@return the product's handle
+     */
+    public synchronized int register(Product product) {
+        int handle = _size;
+        int chunk = handle >>> CHUNK_BITS;
+
+        if (chunk == _products.length) {
+            Product[][] products = Arrays.copyOf(_products, chunk + 1);
+            int[][] stock = Arrays.copyOf(_stock, chunk + 1);
+            float[][] maxPrice = Arrays.copyOf(_maxPrice, chunk + 1);
+            products[chunk] = new Product[CHUNK_SIZE];
+            stock[chunk] = new int[CHUNK_SIZE];
+            maxPrice[chunk] = new float[CHUNK_SIZE];
+            _stock = stock;
+            _maxPrice = maxPrice;
+            _products = products;
+        }
+
+        _products[chunk][handle & CHUNK_MASK] = product;
+        _stock[chunk][handle & CHUNK_MASK] = product.getSavedStock();
+        _maxPrice[chunk][handle & CHUNK_MASK] = product.getSavedMaxPrice();
+        product.attach(this, handle);
+        _size = handle + 1;
+
+        return handle;
+    }
+
+    public int size() { return _size; }
+
+    public Product get(int handle) { return _products[handle >>> CHUNK_BITS][handle & CHUNK_MASK]; }
+
+    public int getStock(int handle) { return _stock[handle >>> CHUNK_BITS][handle & CHUNK_MASK]; }
+
+    public void setStock(int handle, int stock) { _stock[handle >>> CHUNK_BITS][handle & CHUNK_MASK] = stock; }
+
+    public void addStock(int handle, int stock) { _stock[handle >>> CHUNK_BITS][handle & CHUNK_MASK] += stock; }
+
+    public float getMaxPrice(int handle) { return _maxPrice[handle >>> CHUNK_BITS][handle & CHUNK_MASK]; }
+
+    public void setMaxPrice(int handle, float maxPrice) { _maxPrice[handle >>> CHUNK_BITS][handle & CHUNK_MASK] = maxPrice; }
+}
@@ -10,10 +10,30 @@ public class Recipe implements Serializable{
 
     private List<Product> _products = new ArrayList<Product>();
     private Map<Product, Integer> _productQuantities = new LinkedHashMap<Product, Integer>();
+    // Handles and quantities of the products, in recipe order (built on first use)
+    private transient volatile int[][] _columns;
 
     public void addProduct(Product product, int quantity) {
         _products.add(product);
         _productQuantities.put(product, quantity);
+        _columns = null;
+    }
+
+    private int[][] columns() {
+        int[][] columns = _columns;
+
+        if (columns == null) {
+            int[] handles = new int[_products.size()];
+            int[] quantities = new int[_products.size()];
+
+            for (int i = 0; i < handles.length; i++) {
+                handles[i] = _products.get(i).getHandle();
+                quantities[i] = getProductQuantity(_products.get(i));
+            }
+            _columns = columns = new int[][] { handles, quantities };
+        }
+
+        return columns;
     }
 
     // Getters
@@ -21,6 +41,10 @@ public class Recipe implements Serializable{
         return _products;
     }
 
+    public int[] getHandles() { return columns()[0]; }
+
+    public int[] getQuantities() { return columns()[1]; }
+
     public int getProductQuantity(Product product) {
         int quantity = _productQuantities.get(product);
 
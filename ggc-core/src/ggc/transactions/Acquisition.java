@@ -9,6 +9,7 @@ public class Acquisition extends Transaction implements Serializable {
 
     private static final long serialVersionUID = 202111081638L;
 
+    // Unit price and date, while the acquisition is not in TransactionColumns (and when saved)
     private float _realValue;
     private int _paidDate;
 
@@ -26,25 +27,38 @@ public class Acquisition extends Transaction implements Serializable {
 
     public void updateRealValue(int date){};
 
+    public float calculateRealValue(int date) { return getRealValue(); }
+
     //Getters
     public float getRealValue() {
-        return _realValue;
+        return columns() == null ? _realValue : columns().getRealValue(getId());
     }
 
     public float getBaseValue() {
-        return _realValue;
+        return getRealValue();
     }
 
     public int getPaidDate() {
-        return _paidDate;
+        return columns() == null ? _paidDate : columns().getPaidDate(getId());
     }
     //Setters
     public void setRealValue(float realValue) {
-        _realValue = realValue;
+        if (columns() == null) { _realValue = realValue; }
+        else {
+            columns().setRealValue(getId(), realValue);
+            columns().setBaseValue(getId(), realValue);
+        }
     }
 
     public void setPaidDate(int paidDate) {
-        _paidDate = paidDate;
+        if (columns() == null) { _paidDate = paidDate; }
+        else { columns().setPaidDate(getId(), paidDate); }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        _realValue = getRealValue();
+        _paidDate = getPaidDate();
+        out.defaultWriteObject();
     }
 
     @Override
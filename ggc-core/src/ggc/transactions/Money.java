@@ -0,0 +1,65 @@
+package ggc.transactions;
+
+/**
+ * Amounts of money in fixed point: a long counting units of 2^-16. A price
+ * or value (a float) of magnitude 128 or more converts exactly, and a
+ * smaller one is rounded to the nearest unit (off by at most 2^-17, well
+ * under a cent). Amounts then add and subtract with no rounding at all.
+ * Totals kept over many transactions (balances, receivables) are kept this
+ * way, so they do not drift however many values go in and out of them, and
+ * they do not depend on the order the values went in.
+ *
+ * Amounts range up to about 1.4 * 10^14. Converting a larger value, or
+ * adding totals past that (see Math.addExact), throws ArithmeticException
+ * instead of wrapping around. Amounts are saved along with FRACTION_BITS,
+ * so those saved in other units can be converted (see rescale).
+ *
+ * Prices and transaction values stay floats: they are what is displayed
+ * (rounded), and their float arithmetic is what defines them.
+ */
+public final class Money {
+
+    /** Number of fraction bits: amounts count units of 2^-FRACTION_BITS */
+    public static final int FRACTION_BITS = 16;
+    private static final double ONE = 1L << FRACTION_BITS;
+
+    private Money() {}
+
+    /**
+     * @@param value an amount
+     * @@return the amount in fixed point
+     * @@throws ArithmeticException if the amount is out of range
+     */
+    public static long of(double value) {
+        double units = value * ONE;
+
+        if (Math.abs(units) >= 0x1p63) {
+            throw new ArithmeticException("amount out of range: " + value);
+        }
+
+        return Math.round(units);
+    }
+
+    /**
+     * @@param amount an amount in a fixed point with other units
+     * @@param bits number of fraction bits of those units
+     * @@return the amount in fixed point (rounded to the nearest unit)
+     * @@throws ArithmeticException if the amount is out of range
+     */
+    public static long rescale(long amount, int bits) {
+        if (bits <= FRACTION_BITS) {
+            return Math.multiplyExact(amount, 1L << (FRACTION_BITS - bits));
+        }
+
+        int shift = bits - FRACTION_BITS;
+        return (amount >> shift) + ((amount >> (shift - 1)) & 1);
+    }
+
+    /**
+     * @@param amount an amount in fixed point
+     * @@return the amount
+     */
+    public static double toDouble(long amount) {
+        return amount / ONE;
+    }
+}
@@ -3,12 +3,14 @@ package ggc.transactions;
 import java.io.*;
 import java.util.*;
 import ggc.partners.Partner;
+import ggc.partners.Status;
 import ggc.products.Product;
 
 public class Sale extends Transaction implements Serializable {
 
     private static final long serialVersionUID = 202111081613L;
 
+    // Values and dates, while the sale is not in TransactionColumns (and when saved)
     private float _baseValue;
     private float _realValue;
     private int _deadline;
@@ -26,67 +28,92 @@ public class Sale extends Transaction implements Serializable {
 
     //Getters
     public float getBaseValue() {
-        return _baseValue;
+        return columns() == null ? _baseValue : columns().getBaseValue(getId());
     }
 
     public float getRealValue() {
-        return _realValue;
+        return columns() == null ? _realValue : columns().getRealValue(getId());
     }
 
     public int getLimitDate() {
-        return _deadline;
+        return getDeadline();
     }
 
     public int getPaidDate() {
-        return _paidDate;
+        return columns() == null ? _paidDate : columns().getPaidDate(getId());
     }
 
-    public int getDeadline() { return _deadline; }
+    public int getDeadline() {
+        return columns() == null ? _deadline : columns().getDeadline(getId());
+    }
 
     //Setters
     public void setBaseValue(float baseValue) {
-        _baseValue = baseValue;
+        if (columns() == null) { _baseValue = baseValue; }
+        else { columns().setBaseValue(getId(), baseValue); }
     }
 
     public void setRealValue(float realValue) {
-        _realValue = realValue;
+        if (columns() == null) { _realValue = realValue; }
+        else { columns().setRealValue(getId(), realValue); }
     }
 
     public void setLimitDate(int deadline) {
-        _deadline = deadline;
+        if (columns() == null) { _deadline = deadline; }
+        else { columns().setDeadline(getId(), deadline); }
     }
 
     public void setPaidDate(int paidDate) {
-        _paidDate = paidDate;
+        if (columns() == null) { _paidDate = paidDate; }
+        else { columns().setPaidDate(getId(), paidDate); }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        _baseValue = getBaseValue();
+        _realValue = getRealValue();
+        _deadline = getDeadline();
+        _paidDate = getPaidDate();
+        out.defaultWriteObject();
     }
 
     private int calculatePeriod(int date) {
         int n = getProduct().getDeadline();
+        int deadline = getDeadline();
 
-        if (date <= _deadline - n) { // Updating the period in which the payment currently lies
+        if (date <= deadline - n) { // Updating the period in which the payment currently lies
             return 1;
-        } else if (date <= _deadline) {
+        } else if (date <= deadline) {
             return 2;
-        } else if (date <= _deadline + n) {
+        } else if (date <= deadline + n) {
             return 3;
         }
 
         return 4;
     }
 
-    public void updateRealValue(int date) {
+    public float calculateRealValue(Status status, int date) {
         int period = calculatePeriod(date);
-        int dayDif = _deadline - date;
+        int dayDif = getDeadline() - date;
 
-        _realValue = getPartner().getStatus().calculateRealValue(_baseValue, period, dayDif);
+        return status.calculateRealValue(getBaseValue(), period, dayDif);
+    }
+
+    public float calculateRealValue(int date) {
+        return calculateRealValue(getPartner().getStatus(), date);
+    }
+
+    public void updateRealValue(int date) {
+        setRealValue(calculateRealValue(date));
     }
 
     public void markAsPaid(int date) {
-        _paidDate = date;
+        setPaidDate(date);
         setPaid();
 
         updateRealValue(date);
-        getPartner().getStatus().updatePoints(this);
+
+        Partner partner = getPartner();
+        partner.setPoints(partner.getStatus().updatePoints(partner.getPoints(), getRealValue(), getPaidDate(), getDeadline()));
     }
 
     @Override
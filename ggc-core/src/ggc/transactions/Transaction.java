@@ -11,8 +11,10 @@ public abstract class Transaction implements Serializable, Comparable<Transactio
     private int _id;
     private Partner _partner;
     private Product _product;
+    // Amount and payment, while the transaction is not in TransactionColumns (and when saved)
     private int _amount;
     private boolean _paid = false;
+    private transient TransactionColumns _columns;
 
     // Getters
     public int getId() {
@@ -28,9 +30,13 @@ public abstract class Transaction implements Serializable, Comparable<Transactio
     }
 
     public int getAmount() {
-        return _amount;
+        return _columns == null ? _amount : _columns.getAmount(_id);
     }
 
+    TransactionColumns columns() { return _columns; }
+
+    void attach(TransactionColumns columns) { _columns = columns; }
+
     public int getPaidDate() { return -1; }
 
     public int getDeadline() { return -1; }
@@ -49,7 +55,8 @@ public abstract class Transaction implements Serializable, Comparable<Transactio
     }   
 
     public void setAmount(int amount) {
-        _amount = amount;
+        if (_columns == null) { _amount = amount; }
+        else { _columns.setAmount(_id, amount); }
     }
 
     public abstract float getRealValue();
@@ -60,9 +67,20 @@ public abstract class Transaction implements Serializable, Comparable<Transactio
 
     public abstract void updateRealValue(int date);
 
-    public boolean paid() { return _paid; }
+    public abstract float calculateRealValue(int date);
+
+    public boolean paid() { return _columns == null ? _paid : _columns.isPaid(_id); }
 
-    public void setPaid() {_paid = true;}
+    public void setPaid() {
+        if (_columns == null) { _paid = true; }
+        else { _columns.setPaid(_id); }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        _amount = getAmount();
+        _paid = paid();
+        out.defaultWriteObject();
+    }
 
     public int compareTo(Transaction transaction) {
         return (transaction.getId() - _id);
@@ -0,0 +1,189 @@
+package ggc.transactions;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The numbers of every transaction in a log, kept in primitive columns
+ * indexed by id: kind, whether it is paid, partner and product handles,
+ * amount, base and real value, deadline and payment date. A transaction in
+ * a log reads and writes its numbers here, so scans over all transactions
+ * (balances, receivables) run over the columns without visiting the
+ * transactions themselves.
+ *
+ * Columns are chunked like the log (1024 rows, then 2048, ...), so they grow
+ * without copying. A row is written by the thread appending its transaction,
+ * before the log publishes it; afterwards it is guarded by the partner's lock.
+ */
+public class TransactionColumns {
+
+    public static final int SALE = 0;
+    public static final int ACQUISITION = 1;
+    public static final int BREAKDOWN = 2;
+
+    private static final int PAID = 4;
+    private static final int KIND = 3;
+
+    private static final int FIRST_CHUNK_BITS = 10;
+    private static final int CHUNKS = 31 - FIRST_CHUNK_BITS;
+
+    private static class Chunk {
+        final byte[] flags;
+        final int[] partner;
+        final int[] product;
+        final int[] amount;
+        final float[] baseValue;
+        final float[] realValue;
+        final int[] deadline;
+        final int[] paidDate;
+
+        Chunk(int size) {
+            flags = new byte[size];
+            partner = new int[size];
+            product = new int[size];
+            amount = new int[size];
+            baseValue = new float[size];
+            realValue = new float[size];
+            deadline = new int[size];
+            paidDate = new int[size];
+        }
+    }
+
+    private final AtomicReferenceArray<Chunk> _chunks = new AtomicReferenceArray<Chunk>(CHUNKS);
+
+    private static int chunkOf(int id) {
+        return 31 - Integer.numberOfLeadingZeros((id >>> FIRST_CHUNK_BITS) + 1);
+    }
+
+    private static int chunkStart(int chunk) {
+        return ((1 << chunk) - 1) << FIRST_CHUNK_BITS;
+    }
+
+    private Chunk chunk(int chunk) {
+        Chunk rows = _chunks.get(chunk);
+
+        if (rows == null) {
+            _chunks.compareAndSet(chunk, null, new Chunk(1 << (FIRST_CHUNK_BITS + chunk)));
+            rows = _chunks.get(chunk);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Writes a transaction's row, from the numbers it holds, and makes the
+     * transaction read and write them here from now on.
+     *
+     * @@param transaction transaction whose id is the row
+     */
+    public void register(Transaction transaction) {
+        int id = transaction.getId();
+        int c = chunkOf(id);
+        int row = id - chunkStart(c);
+        Chunk rows = chunk(c);
+
+        int kind = transaction instanceof Breakdown ? BREAKDOWN : transaction instanceof Sale ? SALE : ACQUISITION;
+        rows.flags[row] = (byte) (kind | (transaction.paid() ? PAID : 0));
+        rows.partner[row] = transaction.getPartner().getHandle();
+        rows.product[row] = transaction.getProduct().getHandle();
+        rows.amount[row] = transaction.getAmount();
+        rows.baseValue[row] = transaction.getBaseValue();
+        rows.realValue[row] = transaction.getRealValue();
+        rows.deadline[row] = transaction.getDeadline();
+        rows.paidDate[row] = transaction.getPaidDate();
+
+        // Allocate the next chunk ahead, once this one is three quarters full
+        if (row == (rows.amount.length >>> 2) * 3 && c + 1 < CHUNKS) {
+            chunk(c + 1);
+        }
+
+        transaction.attach(this);
+    }
+
+    /**
+     * Writes the row of an id left without a transaction: a paid acquisition
+     * of nothing, which no balance or scan counts.
+     *
+     * @@param id transaction id
+     */
+    public void retire(int id) {
+        int c = chunkOf(id);
+        int row = id - chunkStart(c);
+        Chunk rows = chunk(c);
+
+        rows.flags[row] = (byte) (ACQUISITION | PAID);
+        rows.partner[row] = 0;
+        rows.product[row] = 0;
+        rows.amount[row] = 0;
+        rows.baseValue[row] = 0;
+        rows.realValue[row] = 0;
+        rows.deadline[row] = 0;
+        rows.paidDate[row] = 0;
+    }
+
+    /**
+     * Collects the unpaid sales (acquisitions are paid when made) among
+     * transactions from to to, as many as fit in ids.
+     *
+     * @@param from first id
+     * @@param to id past the last
+     * @@return number of sales collected
+     */
+    int collectUnpaid(int from, int to, int[] ids, float[] baseValue, int[] deadline, int[] product, int[] partner) {
+        int n = 0;
+
+        for (int id = from; id < to && n < ids.length; ) {
+            int c = chunkOf(id);
+            int start = chunkStart(c);
+            Chunk rows = _chunks.get(c);
+            int end = Math.min(to, start + rows.flags.length);
+
+            for (; id < end && n < ids.length; id++) {
+                int row = id - start;
+                if ((rows.flags[row] & PAID) == 0) {
+                    ids[n] = id;
+                    baseValue[n] = rows.baseValue[row];
+                    deadline[n] = rows.deadline[row];
+                    product[n] = rows.product[row];
+                    partner[n] = rows.partner[row];
+                    n++;
+                }
+            }
+        }
+
+        return n;
+    }
+
+    private Chunk rows(int id) { return _chunks.get(chunkOf(id)); }
+
+    private static int row(int id) { return id - chunkStart(chunkOf(id)); }
+
+    public int getKind(int id) { return rows(id).flags[row(id)] & KIND; }
+
+    public boolean isPaid(int id) { return (rows(id).flags[row(id)] & PAID) != 0; }
+
+    public void setPaid(int id) { rows(id).flags[row(id)] |= PAID; }
+
+    public int getPartner(int id) { return rows(id).partner[row(id)]; }
+
+    public int getProduct(int id) { return rows(id).product[row(id)]; }
+
+    public int getAmount(int id) { return rows(id).amount[row(id)]; }
+
+    public void setAmount(int id, int amount) { rows(id).amount[row(id)] = amount; }
+
+    public float getBaseValue(int id) { return rows(id).baseValue[row(id)]; }
+
+    public void setBaseValue(int id, float value) { rows(id).baseValue[row(id)] = value; }
+
+    public float getRealValue(int id) { return rows(id).realValue[row(id)]; }
+
+    public void setRealValue(int id, float value) { rows(id).realValue[row(id)] = value; }
+
+    public int getDeadline(int id) { return rows(id).deadline[row(id)]; }
+
+    public void setDeadline(int id, int deadline) { rows(id).deadline[row(id)] = deadline; }
+
+    public int getPaidDate(int id) { return rows(id).paidDate[row(id)]; }
+
+    public void setPaidDate(int id, int date) { rows(id).paidDate[row(id)] = date; }
+}
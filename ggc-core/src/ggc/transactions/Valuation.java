@@ -0,0 +1,148 @@
+package ggc.transactions;
+
+import ggc.partners.*;
+import ggc.products.*;
+
+/**
+ * Real values of the unpaid sales (and breakdowns) in a log at a date,
+ * worked out a block at a time from primitive columns: each sale's base
+ * value and deadline, its product's deadline window and its partner's
+ * status tier. The values are the ones Sale.calculateRealValue gives, to
+ * the bit, without visiting the sales or calling their partners' statuses.
+ *
+ * Blocks are valued with the vector API when the jdk.incubator.vector
+ * module is loaded (java --add-modules jdk.incubator.vector), and by a
+ * scalar loop otherwise.
+ *
+ * Values are read without locking: a sale paid, or a partner whose tier
+ * changed, after its block was collected is valued as it was then.
+ */
+public class Valuation {
+
+    private static final int BLOCK = 1024;
+
+    /** Whether blocks are valued with the vector API */
+    static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final TransactionColumns _columns;
+    private final ProductColumns _products;
+    private final PartnerColumns _partners;
+    private final int _date;
+    private final int _end;
+    private int _next = 0;
+    private int _size = 0;
+
+    private final int[] _ids = new int[BLOCK];
+    private final float[] _baseValue = new float[BLOCK];
+    private final int[] _deadline = new int[BLOCK];
+    private final int[] _product = new int[BLOCK];
+    private final int[] _partner = new int[BLOCK];
+    private final int[] _window = new int[BLOCK];
+    private final int[] _tier = new int[BLOCK];
+    private final float[] _values = new float[BLOCK];
+    private final int[] _periods = new int[BLOCK];
+
+    /**
+     * @@param columns columns of the log
+     * @@param products products of the warehouse
+     * @@param partners partners of the warehouse
+     * @@param size number of transactions to go through (the log's size)
+     * @@param date date at which sales are valued
+     */
+    public Valuation(TransactionColumns columns, ProductColumns products, PartnerColumns partners, int size, int date) {
+        _columns = columns;
+        _products = products;
+        _partners = partners;
+        _end = size;
+        _date = date;
+    }
+
+    /**
+     * Collects and values the next block of unpaid sales.
+     *
+     * @@return whether there were any left
+     */
+    public boolean next() {
+        _size = _columns.collectUnpaid(_next, _end, _ids, _baseValue, _deadline, _product, _partner);
+        _next = _size == BLOCK ? _ids[BLOCK - 1] + 1 : _end;
+
+        for (int i = 0; i < _size; i++) {
+            _window[i] = _products.get(_product[i]).getDeadline();
+            _tier[i] = _partners.getTier(_partner[i]);
+        }
+        value(_size, _baseValue, _deadline, _window, _tier, _date, _values, _periods);
+
+        return _size > 0;
+    }
+
+    /** @@return number of sales in the block */
+    public int size() { return _size; }
+
+    /** @@return id of the i-th sale of the block */
+    public int id(int i) { return _ids[i]; }
+
+    /** @@return handle of the i-th sale's partner */
+    public int partner(int i) { return _partner[i]; }
+
+    /** @@return tier the i-th sale was valued at */
+    public int tier(int i) { return _tier[i]; }
+
+    /** @@return real value of the i-th sale */
+    public float value(int i) { return _values[i]; }
+
+    /** @@return payment period (1 to 4, see Sale.calculatePeriod) the i-th sale is in */
+    public int period(int i) { return _periods[i]; }
+
+    /**
+     * Values n sales, as Sale.calculateRealValue does.
+     *
+     * @@param n number of sales
+     * @@param baseValue sales' base values
+     * @@param deadline sales' deadlines
+     * @@param window deadline windows of the sales' products
+     * @@param tier status tiers of the sales' partners
+     * @@param date date at which sales are valued
+     * @@param values receives the sales' real values
+     * @@param periods receives the sales' payment periods
+     */
+    static void value(int n, float[] baseValue, int[] deadline, int[] window, int[] tier, int date, float[] values, int[] periods) {
+        int i = VECTOR ? VectorValuation.value(n, baseValue, deadline, window, tier, date, values, periods) : 0;
+
+        for (; i < n; i++) {
+            periods[i] = period(deadline[i], window[i], date);
+            values[i] = realValue(baseValue[i], tier[i], periods[i], deadline[i] - date);
+        }
+    }
+
+    static int period(int deadline, int window, int date) {
+        if (date <= deadline - window) {
+            return 1;
+        } else if (date <= deadline) {
+            return 2;
+        } else if (date <= deadline + window) {
+            return 3;
+        }
+
+        return 4;
+    }
+
+    // The tiers' calculateRealValue, side by side
+    static float realValue(float baseValue, int tier, int period, int dayDifference) {
+        if (baseValue < 0) {
+            return 0;
+        }
+        if (period == 1) {
+            return baseValue * 0.9f;
+        }
+        switch (tier) {
+            case (Status.ELITE):
+                return period == 2 ? baseValue * 0.9f : period == 3 ? baseValue * 0.95f : baseValue;
+            case (Status.SELECTION):
+                if (period == 2) { return dayDifference >= 2 ? baseValue * 0.95f : baseValue; }
+                if (period == 3) { return Math.abs(dayDifference) > 1 ? baseValue * (1 - dayDifference * 0.02f) : baseValue; }
+                return baseValue * (1 - dayDifference * 0.05f);
+        }
+
+        return period == 2 ? baseValue : baseValue * (1 - dayDifference * (period == 3 ? 0.05f : 0.1f));
+    }
+}
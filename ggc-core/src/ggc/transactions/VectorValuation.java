@@ -0,0 +1,65 @@
+package ggc.transactions;
+
+import jdk.incubator.vector.*;
+import ggc.partners.Status;
+
+/**
+ * Valuation's kernel over the vector API (only loaded when the
+ * jdk.incubator.vector module is). Each lane works out the factor its sale's
+ * tier and period apply to the base value: a constant, or 1 minus the days
+ * to the deadline times a slope, computed with the same float operations as
+ * the tiers' calculateRealValue, so values come out the same to the bit.
+ */
+final class VectorValuation {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    private VectorValuation() {}
+
+    /**
+     * Values as many of the n sales as fill whole vectors (see Valuation.value).
+     *
+     * @@return number of sales valued (the rest are left to the scalar loop)
+     */
+    static int value(int n, float[] baseValue, int[] deadline, int[] window, int[] tier, int date, float[] values, int[] periods) {
+        int bound = FLOATS.loopBound(n);
+
+        for (int i = 0; i < bound; i += FLOATS.length()) {
+            IntVector dl = IntVector.fromArray(INTS, deadline, i);
+            IntVector w = IntVector.fromArray(INTS, window, i);
+            IntVector t = IntVector.fromArray(INTS, tier, i);
+            IntVector days = dl.sub(date);
+
+            IntVector period = IntVector.broadcast(INTS, 4)
+                    .blend(3, dl.add(w).compare(VectorOperators.GE, date))
+                    .blend(2, days.compare(VectorOperators.GE, 0))
+                    .blend(1, dl.sub(w).compare(VectorOperators.GE, date));
+            period.intoArray(periods, i);
+
+            VectorMask<Integer> p1 = period.compare(VectorOperators.EQ, 1);
+            VectorMask<Integer> p2 = period.compare(VectorOperators.EQ, 2);
+            VectorMask<Integer> p3 = period.compare(VectorOperators.EQ, 3);
+            VectorMask<Integer> p4 = period.compare(VectorOperators.EQ, 4);
+            VectorMask<Integer> elite = t.compare(VectorOperators.EQ, Status.ELITE);
+            VectorMask<Integer> selection = t.compare(VectorOperators.EQ, Status.SELECTION);
+            VectorMask<Integer> normal = elite.or(selection).not();
+
+            FloatVector constant = FloatVector.broadcast(FLOATS, 1f)
+                    .blend(0.9f, p1.or(p2.and(elite)).cast(FLOATS))
+                    .blend(0.95f, p2.and(selection).and(days.compare(VectorOperators.GE, 2)).or(p3.and(elite)).cast(FLOATS));
+            FloatVector slope = FloatVector.zero(FLOATS)
+                    .blend(0.05f, p3.and(normal).or(p4.and(selection)).cast(FLOATS))
+                    .blend(0.02f, p3.and(selection).and(days.abs().compare(VectorOperators.GT, 1)).cast(FLOATS))
+                    .blend(0.1f, p4.and(normal).cast(FLOATS));
+
+            FloatVector b = FloatVector.fromArray(FLOATS, baseValue, i);
+            FloatVector d = (FloatVector) days.convert(VectorOperators.I2F, 0);
+            FloatVector factor = constant.blend(FloatVector.broadcast(FLOATS, 1f).sub(d.mul(slope)), slope.compare(VectorOperators.NE, 0f));
+
+            b.mul(factor).blend(0f, b.compare(VectorOperators.LT, 0f)).intoArray(values, i);
+        }
+
+        return bound;
+    }
+}
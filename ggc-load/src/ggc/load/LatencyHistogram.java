@@ -0,0 +1,123 @@
+package ggc.load;
+
+/**
+ * Latency histogram with bounded relative error, in the style of HdrHistogram:
+ * values are counted in buckets that are linear within each power of two, so
+ * that any recorded value is reported within 1/128 of its real value, using
+ * a fixed amount of memory and no allocation per recorded value.
+ */
+public class LatencyHistogram {
+
+  /** Bits of precision within each power of two. */
+  private static final int SUB_BUCKET_BITS = 7;
+
+  /** Number of linear sub-buckets within each power of two. */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Counts, by bucket index. */
+  private final long[] _counts = new long[(64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS];
+
+  /** Number of recorded values. */
+  private long _total = 0;
+
+  /** Sum of recorded values. */
+  private long _sum = 0;
+
+  /** Smallest recorded value. */
+  private long _min = Long.MAX_VALUE;
+
+  /** Largest recorded value. */
+  private long _max = 0;
+
+  /**
+   * @param value value to record (negative values are recorded as 0)
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    _counts[index(value)]++;
+    _total++;
+    _sum += value;
+    _min = Math.min(_min, value);
+    _max = Math.max(_max, value);
+  }
+
+  /**
+   * @param value a value
+   * @return index of the bucket counting it
+   */
+  private static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  /**
+   * @param index bucket index
+   * @return largest value counted by the bucket
+   */
+  private static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long top = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+    return (top << shift) + (1L << shift) - 1;
+  }
+
+  /** @return number of recorded values */
+  public long count() {
+    return _total;
+  }
+
+  /** @return smallest recorded value (0 if none) */
+  public long min() {
+    return _total == 0 ? 0 : _min;
+  }
+
+  /** @return largest recorded value */
+  public long max() {
+    return _max;
+  }
+
+  /** @return mean of the recorded values (0 if none) */
+  public double mean() {
+    return _total == 0 ? 0 : (double) _sum / _total;
+  }
+
+  /**
+   * @param percentile percentile, between 0 and 100
+   * @return value at or below which the given percentage of values lie
+   */
+  public long percentile(double percentile) {
+    if (_total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * _total));
+    long seen = 0;
+    for (int i = 0; i < _counts.length; i++) {
+      seen += _counts[i];
+      if (seen >= rank) {
+        return Math.min(highestValue(i), _max);
+      }
+    }
+
+    return _max;
+  }
+
+  /**
+   * @param other histogram whose values are added to this one
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < _counts.length; i++) {
+      _counts[i] += other._counts[i];
+    }
+    _total += other._total;
+    _sum += other._sum;
+    _min = Math.min(_min, other._min);
+    _max = Math.max(_max, other._max);
+  }
+
+}
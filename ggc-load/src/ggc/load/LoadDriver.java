@@ -0,0 +1,371 @@
+package ggc.load;
+
+import java.io.*;
+import java.util.*;
+import ggc.WarehouseManager;
+import ggc.exceptions.*;
+
+/**
+ * Runs a ggc-app input script (as written by {@link WorkloadGenerator})
+ * directly against a {@link WarehouseManager}, without rendering menus, and
+ * reports the latency distribution of each type of operation and the overall
+ * throughput.
+ *
+ * The script is read as the text interaction would read it, but only the
+ * options of the main and transactions menus are understood; any other
+ * option stops the run with an IOException naming its line.
+ */
+public class LoadDriver {
+
+  /** Latencies (in nanoseconds) and errors of one type of operation. */
+  private static class OperationStats {
+    private final LatencyHistogram _latencies = new LatencyHistogram();
+    private long _errors = 0;
+  }
+
+  /** The warehouse under load. */
+  private final WarehouseManager _manager;
+
+  /** Script being run. */
+  private final BufferedReader _in;
+
+  /** Number of script lines read. */
+  private int _line = 0;
+
+  /** Statistics, by operation type, in order of first appearance. */
+  private final Map<String, OperationStats> _stats = new LinkedHashMap<String, OperationStats>();
+
+  /** Time spent running operations (in nanoseconds). */
+  private long _busyTime = 0;
+
+  /** Wall-clock duration of the run (in nanoseconds). */
+  private long _elapsedTime = 0;
+
+  /**
+   * @param manager warehouse to run the script against
+   * @param in script to run
+   */
+  public LoadDriver(WarehouseManager manager, BufferedReader in) {
+    _manager = manager;
+    _in = in;
+  }
+
+  /**
+   * @return next line of the script
+   * @throws IOException
+   */
+  private String readString() throws IOException {
+    String line = _in.readLine();
+    if (line == null) {
+      throw new EOFException();
+    }
+    _line++;
+    return line;
+  }
+
+  /**
+   * @return next line of the script, as an integer (invalid lines are skipped, as the menus do)
+   * @throws IOException
+   */
+  private int readInteger() throws IOException {
+    while (true) {
+      try {
+        return Integer.parseInt(readString());
+      } catch (NumberFormatException e) {
+        // ask again
+      }
+    }
+  }
+
+  /**
+   * @return next line of the script, as a real number
+   * @throws IOException
+   */
+  private double readReal() throws IOException {
+    while (true) {
+      try {
+        return Double.parseDouble(readString());
+      } catch (NumberFormatException e) {
+        // ask again
+      }
+    }
+  }
+
+  /**
+   * @return next line of the script, as a yes/no answer
+   * @throws IOException
+   */
+  private boolean readBoolean() throws IOException {
+    while (true) {
+      String answer = readString();
+      if (answer.equals(Script.YES) || answer.equals(Script.NO)) {
+        return answer.equals(Script.YES);
+      }
+    }
+  }
+
+  /**
+   * @param menu menu the option was read in
+   * @param option option the driver does not understand
+   * @return exception naming the option and its line in the script
+   */
+  private IOException unknownOption(String menu, int option) {
+    return new IOException("script line " + _line + ": unsupported " + menu + " menu option " + option);
+  }
+
+  /**
+   * @param type operation type
+   * @return statistics of the given operation type
+   */
+  private OperationStats stats(String type) {
+    return _stats.computeIfAbsent(type, t -> new OperationStats());
+  }
+
+  /**
+   * @param type operation type
+   * @param start start of the operation, as given by {@link System#nanoTime()}
+   * @param failed whether the operation failed
+   */
+  private void record(String type, long start, boolean failed) {
+    long duration = System.nanoTime() - start;
+    OperationStats stats = stats(type);
+    stats._latencies.record(duration);
+    if (failed) {
+      stats._errors++;
+    }
+    _busyTime += duration;
+  }
+
+  /**
+   * Runs the script until it leaves the main menu or ends.
+   *
+   * @throws IOException
+   */
+  public void run() throws IOException {
+    long start = System.nanoTime();
+    try {
+      mainMenu();
+    } catch (EOFException e) {
+      // end of script
+    } finally {
+      _elapsedTime = System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * @throws IOException
+   */
+  private void mainMenu() throws IOException {
+    while (true) {
+      int option = readInteger();
+      long start;
+
+      switch (option) {
+        case Script.BACK -> {
+          return;
+        }
+        case Script.MAIN_SHOW_DATE -> {
+          start = System.nanoTime();
+          _manager.requestDate();
+          record("date", start, false);
+        }
+        case Script.MAIN_ADVANCE_DATE -> {
+          int days = readInteger();
+          start = System.nanoTime();
+          try {
+            _manager.requestDateToAdvance(days);
+            record("advanceDate", start, false);
+          } catch (NoSuchDateException e) {
+            record("advanceDate", start, true);
+          }
+        }
+        case Script.MAIN_TRANSACTIONS -> transactionsMenu();
+        case Script.MAIN_SHOW_BALANCE -> {
+          start = System.nanoTime();
+          _manager.requestAvailableBalance();
+          _manager.requestContabilisticBalance();
+          record("balance", start, false);
+        }
+        default -> throw unknownOption("main", option);
+      }
+    }
+  }
+
+  /**
+   * @throws IOException
+   */
+  private void transactionsMenu() throws IOException {
+    while (true) {
+      int option = readInteger();
+      long start;
+
+      switch (option) {
+        case Script.BACK -> {
+          return;
+        }
+        case Script.TRANSACTIONS_SHOW -> {
+          int id = readInteger();
+          start = System.nanoTime();
+          try {
+            _manager.requestShowTransaction(id);
+            record("showTransaction", start, false);
+          } catch (NoSuchTransactionException e) {
+            record("showTransaction", start, true);
+          }
+        }
+        case Script.TRANSACTIONS_BREAKDOWN -> {
+          String partner = readString();
+          String product = readString();
+          int amount = readInteger();
+          start = System.nanoTime();
+          try {
+            _manager.requestAttemptBreakdown(partner, product, amount);
+            record("breakdown", start, false);
+          } catch (NotEnoughProductsException | NoSuchPartnerException | NoSuchProductException e) {
+            record("breakdown", start, true);
+          }
+        }
+        case Script.TRANSACTIONS_SALE -> {
+          String partner = readString();
+          int deadline = readInteger();
+          String product = readString();
+          int amount = readInteger();
+          start = System.nanoTime();
+          try {
+            _manager.requestAttemptSale(partner, deadline, product, amount);
+            record("sale", start, false);
+          } catch (NotEnoughProductsException | NoSuchPartnerException | NoSuchProductException e) {
+            record("sale", start, true);
+          }
+        }
+        case Script.TRANSACTIONS_ACQUISITION -> acquisition();
+        case Script.TRANSACTIONS_PAYMENT -> {
+          int id = readInteger();
+          start = System.nanoTime();
+          try {
+            _manager.requestPay(id);
+            record("payment", start, false);
+          } catch (NoSuchTransactionException e) {
+            record("payment", start, true);
+          }
+        }
+        default -> throw unknownOption("transactions", option);
+      }
+    }
+  }
+
+  /**
+   * An acquisition, which (as in the menus) asks for a recipe when the product is new.
+   *
+   * @throws IOException
+   */
+  private void acquisition() throws IOException {
+    String partner = readString();
+    String product = readString();
+    float price = (float) readReal();
+    int amount = readInteger();
+    long start = System.nanoTime();
+
+    try {
+      _manager.requestAcquire(partner, product, price, amount);
+      record("acquisition", start, false);
+    } catch (NotEnoughProductsException | NoSuchPartnerException e) {
+      record("acquisition", start, true);
+    } catch (NoSuchProductException e) {
+      record("acquisition", start, true);
+
+      if (!readBoolean()) {
+        start = System.nanoTime();
+        try {
+          _manager.requestAcquireNewProductSimple(partner, product, price, amount);
+          record("acquisitionNewProduct", start, false);
+        } catch (NoSuchPartnerException | NoSuchProductException e2) {
+          record("acquisitionNewProduct", start, true);
+        }
+      } else {
+        int components = readInteger();
+        float multiplier = (float) readReal();
+        ArrayList<String> products = new ArrayList<String>();
+        ArrayList<Integer> quantities = new ArrayList<Integer>();
+        for (int i = 0; i < components; i++) {
+          products.add(readString());
+          quantities.add(readInteger());
+        }
+
+        start = System.nanoTime();
+        try {
+          _manager.requestAcquireNewProductDerivative(partner, product, price, amount, products, quantities, multiplier);
+          record("acquisitionNewProduct", start, false);
+        } catch (NoSuchPartnerException | NoSuchProductException e2) {
+          record("acquisitionNewProduct", start, true);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param out where to write the report
+   */
+  public void report(PrintStream out) {
+    LatencyHistogram all = new LatencyHistogram();
+    long errors = 0;
+
+    out.printf("%-22s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "count", "errors", "mean(us)", "p50(us)",
+        "p99(us)", "p999(us)", "max(us)");
+    for (Map.Entry<String, OperationStats> entry : _stats.entrySet()) {
+      OperationStats stats = entry.getValue();
+      report(out, entry.getKey(), stats._latencies, stats._errors);
+      all.add(stats._latencies);
+      errors += stats._errors;
+    }
+    report(out, "all", all, errors);
+
+    double seconds = _elapsedTime / 1e9;
+    out.printf("%nelapsed: %.3f s, busy: %.3f s%n", seconds, _busyTime / 1e9);
+    out.printf("throughput: %.1f ops/s%n", seconds == 0 ? 0 : all.count() / seconds);
+  }
+
+  /**
+   * @param out where to write the report
+   * @param type operation type
+   * @param latencies latencies, in nanoseconds
+   * @param errors number of failed operations
+   */
+  private static void report(PrintStream out, String type, LatencyHistogram latencies, long errors) {
+    out.printf("%-22s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", type, latencies.count(), errors,
+        latencies.mean() / 1e3, latencies.percentile(50) / 1e3, latencies.percentile(99) / 1e3,
+        latencies.percentile(99.9) / 1e3, latencies.max() / 1e3);
+  }
+
+  /**
+   * @param args import file (or "-" for none), input script and, optionally, report file.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("usage: java ggc.load.LoadDriver <import file|-> <input script> [report file]");
+      System.exit(2);
+    }
+
+    WarehouseManager manager = new WarehouseManager();
+    long importTime = 0;
+    if (!args[0].equals("-")) {
+      long start = System.nanoTime();
+      manager.importFile(args[0]);
+      importTime = System.nanoTime() - start;
+    }
+
+    LoadDriver driver;
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(args[1]), "UTF-8"))) {
+      driver = new LoadDriver(manager, in);
+      driver.run();
+    }
+
+    try (PrintStream out = args.length == 3 ? new PrintStream(new FileOutputStream(args[2]), true, "UTF-8") : null) {
+      PrintStream report = out != null ? out : System.out;
+      report.printf("import: %.3f s%n%n", importTime / 1e9);
+      driver.report(report);
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+package ggc.load;
+
+/**
+ * Option numbers and answers understood by the ggc-app menus, as typed into
+ * a {@code TextInteraction} input script. They must follow the order in which
+ * the commands are registered in the ggc.app menus.
+ */
+interface Script {
+
+  /** Leaves the current menu (or the application, from the main menu). */
+  int BACK = 0;
+
+  /** Main menu: show current date. */
+  int MAIN_SHOW_DATE = 3;
+
+  /** Main menu: advance date (days). */
+  int MAIN_ADVANCE_DATE = 4;
+
+  /** Main menu: open the transactions menu. */
+  int MAIN_TRANSACTIONS = 7;
+
+  /** Main menu: show balances. */
+  int MAIN_SHOW_BALANCE = 9;
+
+  /** Transactions menu: show transaction (transaction). */
+  int TRANSACTIONS_SHOW = 1;
+
+  /** Transactions menu: breakdown (partner, product, amount). */
+  int TRANSACTIONS_BREAKDOWN = 2;
+
+  /** Transactions menu: sale (partner, deadline, product, amount). */
+  int TRANSACTIONS_SALE = 3;
+
+  /** Transactions menu: acquisition (partner, product, price, amount). */
+  int TRANSACTIONS_ACQUISITION = 4;
+
+  /** Transactions menu: payment (transaction). */
+  int TRANSACTIONS_PAYMENT = 5;
+
+  /** Affirmative answer to a yes/no question. */
+  String YES = "s";
+
+  /** Negative answer to a yes/no question. */
+  String NO = "n";
+
+}
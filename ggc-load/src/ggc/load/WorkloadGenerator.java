@@ -0,0 +1,340 @@
+package ggc.load;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates a synthetic warehouse workload: an import file (as read by
+ * {@code WarehouseManager.importFile}) and an input script for the text
+ * interaction of ggc-app (the {@code in} property), driving a mix of sales,
+ * acquisitions, breakdowns and payments with date advances in between.
+ * The script keeps track of the stock it leaves, so that every operation it
+ * writes succeeds: a sale is only written if the stock (crafting derivatives
+ * as the warehouse would) can fill it, and is replaced by an acquisition
+ * otherwise.
+ *
+ * The output depends only on the options below, which are read from system
+ * properties (e.g. {@code -Dpartners=100}):
+ * <ul>
+ * <li>seed (1) - random seed;</li>
+ * <li>partners (20), simpleProducts (50), derivativeProducts (20);</li>
+ * <li>recipeDepth (2) - levels of derivative products above simple ones;</li>
+ * <li>recipeFanout (2) - components of each recipe;</li>
+ * <li>batchesPerProduct (3) - batches of each simple product;</li>
+ * <li>operations (1000) - number of transactions in the script;</li>
+ * <li>sales (50), acquisitions (30), breakdowns (5), payments (15) - relative weights of each operation;</li>
+ * <li>advanceEvery (50) - operations between date advances (0 for none).</li>
+ * </ul>
+ */
+public class WorkloadGenerator {
+
+  /** Random number generator (the only source of variation). */
+  private final Random _random;
+
+  private final int _partners;
+  private final int _simpleProducts;
+  private final int _derivativeProducts;
+  private final int _recipeDepth;
+  private final int _recipeFanout;
+  private final int _batchesPerProduct;
+  private final int _operations;
+  private final int _saleWeight;
+  private final int _acquisitionWeight;
+  private final int _breakdownWeight;
+  private final int _paymentWeight;
+  private final int _advanceEvery;
+
+  /** Product ids, simple products first, then derivatives by level. */
+  private final List<String> _products = new ArrayList<String>();
+  /** Recipe components of each derivative product, by product index. */
+  private final Map<Integer, int[]> _recipes = new HashMap<Integer, int[]>();
+  /** Expected stock of each product, by product index. */
+  private int[] _stock;
+  /** Reference price of each product, by product index. */
+  private int[] _prices;
+
+  /** Id the script's next transaction will get. */
+  private int _nextTransaction = 0;
+  /** Ids of the sales the script has registered. */
+  private final List<Integer> _sales = new ArrayList<Integer>();
+  /** Date the script has advanced to. */
+  private int _date = 0;
+
+  /** Builds a generator configured from system properties. */
+  public WorkloadGenerator() {
+    _random = new Random(Long.getLong("seed", 1));
+    _partners = Math.max(1, Integer.getInteger("partners", 20));
+    _simpleProducts = Math.max(1, Integer.getInteger("simpleProducts", 50));
+    _recipeDepth = Math.max(0, Integer.getInteger("recipeDepth", 2));
+    _derivativeProducts = _recipeDepth == 0 ? 0 : Math.max(0, Integer.getInteger("derivativeProducts", 20));
+    _recipeFanout = Math.max(1, Integer.getInteger("recipeFanout", 2));
+    _batchesPerProduct = Math.max(1, Integer.getInteger("batchesPerProduct", 3));
+    _operations = Math.max(0, Integer.getInteger("operations", 1000));
+    _saleWeight = Math.max(0, Integer.getInteger("sales", 50));
+    _acquisitionWeight = Math.max(0, Integer.getInteger("acquisitions", 30));
+    _breakdownWeight = Math.max(0, Integer.getInteger("breakdowns", 5));
+    _paymentWeight = Math.max(0, Integer.getInteger("payments", 15));
+    _advanceEvery = Math.max(0, Integer.getInteger("advanceEvery", 50));
+  }
+
+  /**
+   * @param i partner number
+   * @return partner's id
+   */
+  private static String partnerId(int i) {
+    return "P" + i;
+  }
+
+  /** @return a random partner's id */
+  private String randomPartner() {
+    return partnerId(_random.nextInt(_partners));
+  }
+
+  /**
+   * @param out import file
+   * @throws IOException
+   */
+  public void writeImportFile(Writer out) throws IOException {
+    for (int i = 0; i < _partners; i++) {
+      out.write("PARTNER|" + partnerId(i) + "|Partner " + i + "|Street " + i + "\n");
+    }
+
+    int total = _simpleProducts + _derivativeProducts;
+    _stock = new int[total];
+    _prices = new int[total];
+
+    for (int i = 0; i < _simpleProducts; i++) {
+      _products.add("S" + i);
+      _prices[i] = 1 + _random.nextInt(100);
+
+      for (int j = 0; j < _batchesPerProduct; j++) {
+        int price = Math.max(1, _prices[i] + _random.nextInt(11) - 5);
+        int stock = 10 + _random.nextInt(191);
+        _stock[i] += stock;
+        out.write("BATCH_S|S" + i + "|" + randomPartner() + "|" + price + "|" + stock + "\n");
+      }
+    }
+
+    // Derivatives are spread evenly through the levels; each recipe uses at least one product of the level below
+    int levelStart = 0;
+    int levelEnd = _simpleProducts;
+    for (int level = 1; level <= _recipeDepth; level++) {
+      int count = _derivativeProducts / _recipeDepth + (level <= _derivativeProducts % _recipeDepth ? 1 : 0);
+
+      for (int k = 0; k < count; k++) {
+        int index = _products.size();
+        Set<Integer> components = new LinkedHashSet<Integer>();
+        components.add(levelStart + _random.nextInt(levelEnd - levelStart));
+        while (components.size() < Math.min(_recipeFanout, levelEnd)) {
+          components.add(_random.nextInt(levelEnd));
+        }
+
+        int[] recipe = new int[2 * components.size()];
+        StringBuilder recipeText = new StringBuilder();
+        int price = 0;
+        int i = 0;
+        for (int c : components) {
+          int quantity = 1 + _random.nextInt(3);
+          recipe[i++] = c;
+          recipe[i++] = quantity;
+          price += quantity * _prices[c];
+          recipeText.append(recipeText.length() > 0 ? "#" : "").append(_products.get(c)).append(':').append(quantity);
+        }
+
+        String id = "D" + (index - _simpleProducts);
+        int multiplier = 1 + _random.nextInt(5);
+        int stock = 1 + _random.nextInt(10);
+        _products.add(id);
+        _recipes.put(index, recipe);
+        _prices[index] = price * (10 + multiplier) / 10;
+        _stock[index] = stock;
+        out.write("BATCH_M|" + id + "|" + randomPartner() + "|" + _prices[index] + "|" + stock + "|0." + multiplier
+            + "|" + recipeText + "\n");
+      }
+
+      levelStart = levelEnd;
+      levelEnd = _products.size();
+      if (levelStart == levelEnd) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Writes the input script. Must be called after {@link #writeImportFile(Writer)}.
+   *
+   * @param out input script
+   * @throws IOException
+   */
+  public void writeScript(Writer out) throws IOException {
+    int weights = _saleWeight + _acquisitionWeight + _breakdownWeight + _paymentWeight;
+
+    line(out, Script.MAIN_TRANSACTIONS);
+    for (int op = 0; op < _operations; op++) {
+      if (_advanceEvery > 0 && op > 0 && op % _advanceEvery == 0) {
+        int days = 1 + _random.nextInt(3);
+        _date += days;
+        line(out, Script.BACK);
+        line(out, Script.MAIN_ADVANCE_DATE);
+        line(out, days);
+        line(out, Script.MAIN_TRANSACTIONS);
+      }
+
+      int choice = weights == 0 ? 0 : _random.nextInt(weights);
+      if ((choice -= _saleWeight) < 0) {
+        writeSale(out);
+      } else if ((choice -= _acquisitionWeight) < 0) {
+        writeAcquisition(out);
+      } else if ((choice -= _breakdownWeight) < 0 && writeBreakdown(out)) {
+        // written
+      } else if (_sales.isEmpty()) {
+        writeSale(out);
+      } else {
+        line(out, Script.TRANSACTIONS_PAYMENT);
+        line(out, _sales.remove(_random.nextInt(_sales.size())));
+      }
+    }
+    line(out, Script.BACK);
+    line(out, Script.MAIN_SHOW_BALANCE);
+    line(out, Script.BACK);
+  }
+
+  /**
+   * Sells something the stock can fill (crafting derivatives if need be), or
+   * writes an acquisition if a few tries find nothing.
+   *
+   * @param out input script
+   * @throws IOException
+   */
+  private void writeSale(Writer out) throws IOException {
+    for (int tries = 0; tries < 5; tries++) {
+      int product = _random.nextInt(_products.size());
+      int amount = 1 + _random.nextInt(3);
+      Map<Integer, Integer> stock = new HashMap<Integer, Integer>();
+      if (!consume(stock, product, amount)) {
+        continue;
+      }
+
+      line(out, Script.TRANSACTIONS_SALE);
+      line(out, randomPartner());
+      line(out, _date + _random.nextInt(15));
+      line(out, _products.get(product));
+      line(out, amount);
+      for (Map.Entry<Integer, Integer> entry : stock.entrySet()) {
+        _stock[entry.getKey()] = entry.getValue();
+      }
+      _sales.add(_nextTransaction++);
+      return;
+    }
+
+    writeAcquisition(out);
+  }
+
+  /**
+   * @param out input script
+   * @throws IOException
+   */
+  private void writeAcquisition(Writer out) throws IOException {
+    int product = _random.nextInt(_products.size());
+    int amount = 1 + _random.nextInt(50);
+    int price = Math.max(1, _prices[product] + _random.nextInt(11) - 5);
+
+    line(out, Script.TRANSACTIONS_ACQUISITION);
+    line(out, randomPartner());
+    line(out, _products.get(product));
+    line(out, price);
+    line(out, amount);
+    _stock[product] += amount;
+    _nextTransaction++;
+  }
+
+  /**
+   * @param out input script
+   * @return whether a derivative product in stock was found to break down
+   * @throws IOException
+   */
+  private boolean writeBreakdown(Writer out) throws IOException {
+    if (_derivativeProducts == 0) {
+      return false;
+    }
+
+    int product = _simpleProducts + _random.nextInt(_derivativeProducts);
+    if (_stock[product] == 0) {
+      return false;
+    }
+
+    int amount = 1 + _random.nextInt(_stock[product]);
+    line(out, Script.TRANSACTIONS_BREAKDOWN);
+    line(out, randomPartner());
+    line(out, _products.get(product));
+    line(out, amount);
+    _stock[product] -= amount;
+    int[] recipe = _recipes.get(product);
+    for (int i = 0; i < recipe.length; i += 2) {
+      _stock[recipe[i]] += amount * recipe[i + 1];
+    }
+    _nextTransaction++;
+    return true;
+  }
+
+  /**
+   * Works out the stock after taking units of a product, crafting missing
+   * derivatives from their components. The warehouse crafts one unit at a
+   * time, but only once a product's stock runs out, so each product ends up
+   * crafting what its demand exceeds its stock by, in whatever order.
+   *
+   * @param stock stock changed so far, by product index (updated)
+   * @param product product index
+   * @param amount amount taken
+   * @return whether there was enough stock (a sale fails, changing nothing, otherwise)
+   */
+  private boolean consume(Map<Integer, Integer> stock, int product, int amount) {
+    int available = stock.getOrDefault(product, _stock[product]);
+    int missing = Math.max(0, amount - available);
+    stock.put(product, Math.max(0, available - amount));
+    if (missing == 0) {
+      return true;
+    }
+
+    int[] recipe = _recipes.get(product);
+    if (recipe == null) {
+      return false;
+    }
+    for (int i = 0; i < recipe.length; i += 2) {
+      if (!consume(stock, recipe[i], missing * recipe[i + 1])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param out input script
+   * @param value one line of input
+   * @throws IOException
+   */
+  private static void line(Writer out, Object value) throws IOException {
+    out.write(String.valueOf(value));
+    out.write('\n');
+  }
+
+  /**
+   * @param args import file and input script to write.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: java [-Doption=value ...] ggc.load.WorkloadGenerator <import file> <input script>");
+      System.exit(2);
+    }
+
+    WorkloadGenerator generator = new WorkloadGenerator();
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[0]), "UTF-8"))) {
+      generator.writeImportFile(out);
+    }
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8"))) {
+      generator.writeScript(out);
+    }
+  }
+
+}
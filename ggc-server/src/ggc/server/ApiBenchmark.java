@@ -0,0 +1,151 @@
+package ggc.server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the API: a number of threads send a mix of product
+ * listings, balance reads and sales for a while, then the throughput and
+ * the latency percentiles are reported.
+ *
+ * Properties: -Durl (http://localhost:8080), -Dthreads (8), -Dseconds (10),
+ * -Dproducts (100), and -Dsales (percentage of requests that are sales, 20).
+ * The partner and products the benchmark sells are acquired, over the API,
+ * before the run.
+ */
+public class ApiBenchmark {
+
+  /** Partner the benchmark buys from and sells to. */
+  private static final String PARTNER = "bench";
+
+  /** Prefix of the benchmark's products. */
+  private static final String PRODUCT = "bench-";
+
+  /** Units acquired of each product (enough for any run). */
+  private static final int STOCK = 100_000_000;
+
+  private final HttpClient _client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+  private final String _url;
+
+  /**
+   * @param url base address of the API
+   */
+  private ApiBenchmark(String url) {
+    _url = url;
+  }
+
+  /**
+   * @param method request method
+   * @param path request path and query
+   * @return the response status
+   * @throws Exception
+   */
+  private int send(String method, String path) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(_url + path))
+        .method(method, HttpRequest.BodyPublishers.noBody()).build();
+    return _client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  /**
+   * Registers the partner (if new) and acquires the products.
+   *
+   * @param products number of products
+   * @throws Exception
+   */
+  private void setUp(int products) throws Exception {
+    send("POST", "/partners?id=" + PARTNER + "&name=bench&address=here");
+    for (int i = 0; i < products; i++) {
+      int status = send("POST", "/acquisitions?partner=" + PARTNER + "&product=" + PRODUCT + i + "&price=10&amount=" + STOCK);
+      if (status != 204) {
+        throw new IllegalStateException("acquisition failed: " + status);
+      }
+    }
+  }
+
+  /**
+   * @param threads client threads
+   * @param seconds duration of the run
+   * @param products number of products
+   * @param salePercentage percentage of requests that are sales
+   * @throws Exception
+   */
+  private void run(int threads, int seconds, int products, int salePercentage) throws Exception {
+    long end = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+    AtomicLong errors = new AtomicLong();
+    List<long[]> latencies = Collections.synchronizedList(new ArrayList<long[]>());
+    Thread[] clients = new Thread[threads];
+
+    for (int t = 0; t < threads; t++) {
+      clients[t] = new Thread(() -> {
+        long[] samples = new long[1024];
+        int count = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < end) {
+          int kind = random.nextInt(100);
+          String method = kind < salePercentage ? "POST" : "GET";
+          String path = kind < salePercentage
+              ? "/sales?partner=" + PARTNER + "&product=" + PRODUCT + random.nextInt(products) + "&amount=1&deadline=10"
+              : kind % 2 == 0 ? "/products" : "/balance";
+
+          long start = System.nanoTime();
+          try {
+            int status = send(method, path);
+            if (status >= 400) {
+              errors.incrementAndGet();
+            }
+          } catch (Exception e) {
+            errors.incrementAndGet();
+          }
+
+          if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+          }
+          samples[count++] = System.nanoTime() - start;
+        }
+
+        latencies.add(Arrays.copyOf(samples, count));
+      });
+      clients[t].start();
+    }
+
+    for (Thread client: clients) {
+      client.join();
+    }
+
+    long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+    System.out.printf("requests: %d (%d errors) in %ds, %.0f req/s%n", all.length, errors.get(), seconds, all.length / (double) seconds);
+    if (all.length > 0) {
+      System.out.printf("latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+          percentile(all, 50) / 1e6, percentile(all, 99) / 1e6, all[all.length - 1] / 1e6);
+    }
+  }
+
+  /**
+   * @param sorted sorted samples
+   * @param percentage percentile
+   * @return the sample at the percentile
+   */
+  private static long percentile(long[] sorted, int percentage) {
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * (long) percentage / 100))];
+  }
+
+  /**
+   * @param args not used
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    ApiBenchmark benchmark = new ApiBenchmark(System.getProperty("url", "http://localhost:8080"));
+    int products = Integer.getInteger("products", 100);
+
+    benchmark.setUp(products);
+    benchmark.run(Integer.getInteger("threads", 8), Integer.getInteger("seconds", 10), products, Integer.getInteger("sales", 20));
+  }
+}
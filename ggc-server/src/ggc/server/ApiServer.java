@@ -0,0 +1,332 @@
+package ggc.server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import ggc.WarehouseManager;
+import ggc.exceptions.*;
+
+/**
+ * HTTP/JSON API over a {@link WarehouseManager}, on the JDK's built-in HTTP
+ * server. Parameters go in the query string or in a form-encoded body.
+ * Lists are JSON arrays with one string per line of the text interface, and
+ * are streamed (chunked) as they are written.
+ *
+ * <pre>
+ * GET  /date                      {"date":N}
+ * POST /date               days   advances the date
+ * GET  /balance                   {"available":X,"contabilistic":Y}
+ * GET  /products                  all products
+ * GET  /products/{id}/batches     the product's batches
+ * GET  /batches            [under] all batches (cheaper than under, if given)
+ * GET  /partners                  all partners
+ * POST /partners           id, name, address
+ * GET  /partners/{id}             the partner and its notifications (which are then cleared)
+ * GET  /partners/{id}/batches
+ * GET  /partners/{id}/sales
+ * GET  /partners/{id}/acquisitions
+ * GET  /partners/{id}/payments    the partner's paid sales
+ * POST /partners/{id}/notifications  product   toggles the product's notifications
+ * GET  /transactions/{id}         {"transaction":"..."}
+ * POST /sales              partner, product, amount, deadline
+ * POST /acquisitions       partner, product, price, amount [, recipe (a:1#b:2), multiplier]
+ * POST /breakdowns         partner, product, amount
+ * POST /payments           transaction
+ * </pre>
+ *
+ * Successful changes answer 204 (201 for a new partner). Unknown ids answer
+ * 404, conflicts (not enough stock, duplicate partner) 409, malformed
+ * requests 400, and unexpected failures 500, all with an {"error":...}
+ * object. The server only listens on the loopback interface.
+ */
+public class ApiServer implements HttpHandler {
+
+  /** Default port. */
+  private static final int DEFAULT_PORT = 8080;
+
+  /** Default number of request threads (without virtual threads). */
+  private static final int DEFAULT_THREADS = 64;
+
+  /** Connections waiting to be accepted. */
+  private static final int BACKLOG = 1024;
+
+  /** Buffer size for streamed responses (each full buffer is sent as a chunk). */
+  private static final int CHUNK_SIZE = 8192;
+
+  /** The warehouse being served. */
+  private final WarehouseManager _manager;
+
+  /**
+   * @param manager the warehouse to serve
+   */
+  public ApiServer(WarehouseManager manager) {
+    _manager = manager;
+  }
+
+  /**
+   * Requests get virtual threads where the platform has them (Java 21 on),
+   * and a fixed pool of threads otherwise.
+   *
+   * @param threads size of the pool, when there are no virtual threads
+   * @return executor for the requests
+   */
+  static ExecutorService newExecutor(int threads) {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(threads);
+    }
+  }
+
+  /**
+   * @param manager the warehouse to serve
+   * @param port loopback port to listen on (0 for any)
+   * @param threads request threads, when there are no virtual threads
+   * @return the started server
+   * @throws IOException
+   */
+  public static HttpServer start(WarehouseManager manager, int port, int threads) throws IOException {
+    // Small responses would otherwise wait for the client's delayed ACK (Nagle's algorithm).
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    server.createContext("/", new ApiServer(manager));
+    server.setExecutor(newExecutor(threads));
+    server.start();
+    return server;
+  }
+
+  /**
+   * @param path request path
+   * @return the path's segments
+   */
+  private static String[] segments(String path) {
+    String trimmed = path.replaceAll("^/+|/+$", "");
+    return trimmed.isEmpty() ? new String[0] : trimmed.split("/+");
+  }
+
+  /**
+   * @param segments request path segments
+   * @return the path with its second segment (an id) replaced by '*'
+   */
+  private static String pattern(String[] segments) {
+    StringBuilder pattern = new StringBuilder();
+
+    for (int i = 0; i < segments.length; i++) {
+      pattern.append('/').append(i == 1 ? "*" : segments[i]);
+    }
+
+    return pattern.toString();
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      String[] path = segments(exchange.getRequestURI().getPath());
+      Parameters parameters = new Parameters(exchange.getRequestURI().getRawQuery(), exchange.getRequestBody());
+      route(exchange, exchange.getRequestMethod() + " " + pattern(path), path, parameters);
+    } catch (BadRequestException e) {
+      sendError(exchange, 400, e.getMessage());
+    } catch (NoSuchPartnerException e) {
+      sendError(exchange, 404, "unknown partner: " + e.getId());
+    } catch (NoSuchProductException e) {
+      sendError(exchange, 404, "unknown product: " + e.getId());
+    } catch (NoSuchTransactionException e) {
+      sendError(exchange, 404, "unknown transaction: " + e.getId());
+    } catch (DuplicatePartnerException e) {
+      sendError(exchange, 409, "duplicate partner: " + e.getId());
+    } catch (NotEnoughProductsException e) {
+      send(exchange, 409, Json.object("error", "not enough stock", "product", e.getProduct(),
+          "requested", e.getStockRecquired(), "available", e.getCurrentStock()));
+    } catch (NoSuchDateException e) {
+      sendError(exchange, 400, "invalid number of days: " + e.getDate());
+    } catch (RuntimeException e) {
+      // A streamed list has already sent its headers, and can only be cut short
+      if (exchange.getResponseCode() == -1) {
+        sendError(exchange, 500, "internal error: " + e);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * @param exchange the request
+   * @param route request method and path pattern (e.g., "GET /partners/*")
+   * @param path request path segments
+   * @param parameters request parameters
+   */
+  private void route(HttpExchange exchange, String route, String[] path, Parameters parameters) throws IOException,
+      BadRequestException, NoSuchPartnerException, NoSuchProductException, NoSuchTransactionException,
+      DuplicatePartnerException, NotEnoughProductsException, NoSuchDateException {
+    switch (route) {
+      case "GET /date" -> send(exchange, 200, Json.object("date", _manager.requestDate()));
+      case "POST /date" -> {
+        _manager.requestDateToAdvance(parameters.integer("days"));
+        send(exchange, 200, Json.object("date", _manager.requestDate()));
+      }
+      case "GET /balance" -> send(exchange, 200, Json.object(
+          "available", _manager.requestAvailableBalance(),
+          "contabilistic", _manager.requestContabilisticBalance()));
+
+      case "GET /products" -> sendList(exchange, _manager.requestListAllProducts());
+      case "GET /products/*/batches" -> sendList(exchange, _manager.requestListBatchesByProduct(path[1]));
+      case "GET /batches" -> sendList(exchange, parameters.has("under")
+          ? _manager.requestListBatchesUnderGivenPrice(parameters.real("under"))
+          : _manager.requestListAllBatches());
+
+      case "GET /partners" -> sendList(exchange, _manager.requestListAllPartners());
+      case "POST /partners" -> {
+        _manager.requestRegisterPartner(parameters.string("id"), parameters.string("name"), parameters.string("address"));
+        send(exchange, 201, Json.object("id", parameters.string("id")));
+      }
+      case "GET /partners/*" -> sendList(exchange, _manager.requestShowSpecificPartner(path[1]));
+      case "GET /partners/*/batches" -> sendList(exchange, _manager.requestListBatchesByPartner(path[1]));
+      case "GET /partners/*/sales" -> sendList(exchange, _manager.requestShowPartnerSales(path[1]));
+      case "GET /partners/*/acquisitions" -> sendList(exchange, _manager.requestShowPartnerAcquisitions(path[1]));
+      case "GET /partners/*/payments" -> sendList(exchange, _manager.requestShowPartnerPaidSales(path[1]));
+      case "POST /partners/*/notifications" -> {
+        _manager.requestToggleProductNotifications(path[1], parameters.string("product"));
+        send(exchange, 204, null);
+      }
+
+      case "GET /transactions/*" -> {
+        int id;
+        try {
+          id = Integer.parseInt(path[1]);
+        } catch (NumberFormatException e) {
+          throw new BadRequestException("not a transaction id: " + path[1]);
+        }
+        send(exchange, 200, Json.object("transaction", _manager.requestShowTransaction(id)));
+      }
+      case "POST /sales" -> {
+        _manager.requestAttemptSale(parameters.string("partner"), parameters.integer("deadline"),
+            parameters.string("product"), parameters.integer("amount"));
+        send(exchange, 204, null);
+      }
+      case "POST /acquisitions" -> {
+        acquire(parameters);
+        send(exchange, 204, null);
+      }
+      case "POST /breakdowns" -> {
+        _manager.requestAttemptBreakdown(parameters.string("partner"), parameters.string("product"), parameters.integer("amount"));
+        send(exchange, 204, null);
+      }
+      case "POST /payments" -> {
+        _manager.requestPay(parameters.integer("transaction"));
+        send(exchange, 204, null);
+      }
+
+      default -> sendError(exchange, 404, "no such resource: " + route);
+    }
+  }
+
+  /**
+   * Acquires a known product, or registers a new one (derivative, if a recipe is given).
+   *
+   * @param parameters partner, product, price, amount, and optionally recipe and multiplier
+   */
+  private void acquire(Parameters parameters) throws BadRequestException, NoSuchPartnerException,
+      NoSuchProductException, NotEnoughProductsException {
+    String partner = parameters.string("partner");
+    String product = parameters.string("product");
+    float price = parameters.real("price");
+    int amount = parameters.integer("amount");
+
+    try {
+      _manager.requestAcquire(partner, product, price, amount);
+    } catch (NoSuchProductException e) {
+      if (!parameters.has("recipe")) {
+        _manager.requestAcquireNewProductSimple(partner, product, price, amount);
+        return;
+      }
+
+      ArrayList<String> products = new ArrayList<String>();
+      ArrayList<Integer> quantities = new ArrayList<Integer>();
+      for (String component: parameters.string("recipe").split("#")) {
+        String[] fields = component.split(":");
+        try {
+          products.add(fields[0]);
+          quantities.add(Integer.parseInt(fields[1]));
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException f) {
+          throw new BadRequestException("bad recipe component: " + component);
+        }
+      }
+
+      _manager.requestAcquireNewProductDerivative(partner, product, price, amount, products, quantities, parameters.real("multiplier"));
+    }
+  }
+
+  /**
+   * @param exchange the request
+   * @param status response status
+   * @param json response body (null for none)
+   * @throws IOException
+   */
+  private static void send(HttpExchange exchange, int status, String json) throws IOException {
+    if (json == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  /**
+   * @param exchange the request
+   * @param status response status
+   * @param message error description
+   * @throws IOException
+   */
+  private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+    send(exchange, status, Json.object("error", message));
+  }
+
+  /**
+   * Streams a list as a JSON array of strings.
+   *
+   * @param exchange the request
+   * @param items the list's lines
+   * @throws IOException
+   */
+  private static void sendList(HttpExchange exchange, Collection<String> items) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(200, 0); // chunked
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), CHUNK_SIZE);
+    Json.writeArray(items, out);
+    out.flush();
+  }
+
+  /**
+   * Serves a warehouse (imported from -Dimport, if given) on loopback port
+   * -Dport (8080 by default), with -Dthreads request threads where there are no virtual
+   * threads.
+   *
+   * @param args not used
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    WarehouseManager manager = new WarehouseManager();
+
+    String datafile = System.getProperty("import");
+    if (datafile != null) {
+      manager.importFile(datafile);
+    }
+
+    HttpServer server = start(manager, Integer.getInteger("port", DEFAULT_PORT), Integer.getInteger("threads", DEFAULT_THREADS));
+    System.err.println("Listening on port " + server.getAddress().getPort());
+  }
+}
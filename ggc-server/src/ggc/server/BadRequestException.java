@@ -0,0 +1,16 @@
+package ggc.server;
+
+/**
+ * A request the API cannot understand (missing or malformed parameters).
+ */
+class BadRequestException extends Exception {
+
+  private static final long serialVersionUID = 202205211712L;
+
+  /**
+   * @param message what is wrong with the request
+   */
+  BadRequestException(String message) {
+    super(message);
+  }
+}
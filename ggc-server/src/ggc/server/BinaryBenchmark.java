@@ -0,0 +1,156 @@
+package ggc.server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import ggc.WarehouseManager;
+
+/**
+ * Operations per second of the same mix of operations (date and balance
+ * reads, and one-unit sales) called in process on a WarehouseManager, and
+ * sent over loopback to a BinaryServer in the same JVM: one request at a
+ * time, and pipelined.
+ *
+ * Properties: -Dthreads (4), -Dconnections (4), -Dwindow (requests in flight
+ * per thread when pipelining, 64), -Dseconds (5 per measurement), -Dproducts
+ * (100), -Dsales (percentage of operations that are sales, 10) and -Dunix
+ * (serve on a Unix domain socket instead of TCP).
+ */
+public class BinaryBenchmark {
+
+  /** Partner the benchmark buys from and sells to. */
+  private static final String PARTNER = "bench";
+
+  /** Prefix of the benchmark's products. */
+  private static final String PRODUCT = "bench-";
+
+  /** Units acquired of each product (enough for any run). */
+  private static final int STOCK = 1_000_000_000;
+
+  private final int _threads = Integer.getInteger("threads", 4);
+  private final int _seconds = Integer.getInteger("seconds", 5);
+  private final int _products = Integer.getInteger("products", 100);
+  private final int _sales = Integer.getInteger("sales", 10);
+
+  /** One operation of the mix. */
+  private interface Operation {
+    void run(int kind, String product) throws Exception;
+  }
+
+  /**
+   * Runs the mix on a number of threads for the measurement time.
+   *
+   * @param name what is measured
+   * @param operation runs an operation of the mix
+   * @throws InterruptedException
+   */
+  private void measure(String name, Operation operation) throws InterruptedException {
+    long end = System.nanoTime() + _seconds * 1_000_000_000L;
+    AtomicLong operations = new AtomicLong();
+    Thread[] threads = new Thread[_threads];
+
+    for (int t = 0; t < _threads; t++) {
+      threads[t] = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long count = 0;
+        try {
+          while (System.nanoTime() < end) {
+            operation.run(random.nextInt(100), PRODUCT + random.nextInt(_products));
+            count++;
+          }
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+        operations.addAndGet(count);
+      });
+      threads[t].start();
+    }
+    for (Thread thread: threads) {
+      thread.join();
+    }
+
+    System.out.printf("%-28s %12.0f ops/s%n", name, operations.get() / (double) _seconds);
+  }
+
+  /**
+   * @param manager warehouse to call
+   * @param kind which operation of the mix (0 to 99)
+   * @param product product to sell
+   */
+  private void inProcess(WarehouseManager manager, int kind, String product) throws Exception {
+    if (kind < _sales) {
+      manager.requestAttemptSale(PARTNER, 10, product, 1);
+    } else if (kind % 2 == 0) {
+      manager.requestDate();
+    } else {
+      manager.requestAvailableBalance();
+    }
+  }
+
+  /**
+   * @param client connection to use
+   * @param kind which operation of the mix (0 to 99)
+   * @param product product to sell
+   * @return the operation's reply
+   */
+  private CompletableFuture<?> remote(BinaryClient client, int kind, String product) {
+    if (kind < _sales) {
+      return client.sale(PARTNER, 10, product, 1);
+    } else if (kind % 2 == 0) {
+      return client.date();
+    } else {
+      return client.availableBalance();
+    }
+  }
+
+  /**
+   * @param args not used
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    BinaryBenchmark benchmark = new BinaryBenchmark();
+    int window = Integer.getInteger("window", 64);
+    int connections = Integer.getInteger("connections", 4);
+
+    WarehouseManager manager = new WarehouseManager();
+    manager.requestRegisterPartner(PARTNER, "bench", "here");
+    for (int i = 0; i < benchmark._products; i++) {
+      manager.requestAcquireNewProductSimple(PARTNER, PRODUCT + i, 10, STOCK);
+    }
+
+    SocketAddress address;
+    if (Boolean.getBoolean("unix")) {
+      address = UnixDomainSocketAddress.of(Files.createTempDirectory("ggc").resolve("ggc.sock"));
+    } else {
+      address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    // Without virtual threads, every connection needs a server thread of its own.
+    try (BinaryServer server = new BinaryServer(manager, address, connections);
+        ClientPool pool = new ClientPool(server.address(), connections)) {
+      Thread serving = new Thread(server::serve, "binary-server");
+      serving.setDaemon(true);
+      serving.start();
+
+      benchmark.measure("in process", (kind, product) -> benchmark.inProcess(manager, kind, product));
+      benchmark.measure("remote, one at a time", (kind, product) -> benchmark.remote(pool.get(), kind, product).get());
+
+      ThreadLocal<Semaphore> windows = ThreadLocal.withInitial(() -> new Semaphore(window));
+      benchmark.measure("remote, pipelined (" + window + ")", (kind, product) -> {
+        Semaphore inFlight = windows.get();
+        inFlight.acquire();
+        benchmark.remote(pool.get(), kind, product).whenComplete((result, failure) -> inFlight.release());
+      });
+
+      if (address instanceof UnixDomainSocketAddress unix) {
+        Files.deleteIfExists(unix.getPath());
+      }
+    }
+  }
+}
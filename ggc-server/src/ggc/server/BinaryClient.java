@@ -0,0 +1,328 @@
+package ggc.server;
+
+import java.io.*;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A connection to a {@link BinaryServer}. Every operation sends its request
+ * at once and returns a future for the reply, so any number of requests can
+ * be in flight (pipelined) on the connection, from any number of threads.
+ * Failed operations complete their futures with the exception the
+ * WarehouseManager threw (e.g., NoSuchPartnerException), and with an
+ * IOException if the connection is lost.
+ *
+ * Requests sent while another thread is writing are queued and written
+ * together with it, so concurrent callers share system calls.
+ */
+public class BinaryClient implements AutoCloseable {
+
+  /** A request waiting for its reply. */
+  private record Pending<T>(CompletableFuture<T> future, Function<ByteBuffer, T> result) {
+
+    /**
+     * @param status reply status
+     * @param payload reply payload
+     */
+    void complete(byte status, ByteBuffer payload) {
+      try {
+        if (status == Protocol.OK) {
+          future.complete(result.apply(payload));
+        } else {
+          future.completeExceptionally(Protocol.getError(status, payload));
+        }
+      } catch (RuntimeException e) {
+        future.completeExceptionally(new IOException("malformed reply", e));
+      }
+    }
+  }
+
+  /** The connection. */
+  private final FrameChannel _channel;
+
+  /** Next request id. */
+  private final AtomicInteger _ids = new AtomicInteger();
+
+  /** Requests waiting for their replies, by id. */
+  private final ConcurrentHashMap<Integer, Pending<?>> _pending = new ConcurrentHashMap<Integer, Pending<?>>();
+
+  /** Requests not yet sent. */
+  private Encoder _queued = new Encoder();
+
+  /** Requests being sent (swapped with _queued by the writing thread). */
+  private Encoder _sending = new Encoder();
+
+  /** Whether a thread is writing. */
+  private boolean _writing;
+
+  /** Why the connection is unusable (null while it is usable). */
+  private volatile IOException _failure;
+
+  /**
+   * @param channel the connection
+   */
+  private BinaryClient(SocketChannel channel) {
+    _channel = new FrameChannel(channel);
+
+    Thread reader = new Thread(this::readReplies, "binary-client-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * @param address server address (an InetSocketAddress or a UnixDomainSocketAddress)
+   * @return a client connected to the server
+   * @throws IOException if the server cannot be reached
+   */
+  public static BinaryClient connect(SocketAddress address) throws IOException {
+    SocketChannel channel;
+    if (address instanceof UnixDomainSocketAddress) {
+      channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+    } else {
+      channel = SocketChannel.open();
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+    channel.connect(address);
+    return new BinaryClient(channel);
+  }
+
+  /** @return whether the connection can still be used */
+  public boolean isOpen() {
+    return _failure == null;
+  }
+
+  /** @return number of requests waiting for their replies */
+  public int pending() {
+    return _pending.size();
+  }
+
+  /** Completes the pending requests with the replies, until the connection is lost. */
+  private void readReplies() {
+    try {
+      ByteBuffer frame;
+      while ((frame = _channel.read()) != null) {
+        Pending<?> pending = _pending.remove(frame.getInt());
+        if (pending != null) {
+          pending.complete(frame.get(), frame);
+        }
+      }
+      fail(new EOFException("connection closed by the server"));
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Makes the connection unusable and fails the pending requests.
+   *
+   * @param failure why
+   */
+  private void fail(IOException failure) {
+    if (_failure == null) {
+      _failure = failure;
+    }
+    for (Integer id: _pending.keySet()) {
+      Pending<?> pending = _pending.remove(id);
+      if (pending != null) {
+        pending.future().completeExceptionally(_failure);
+      }
+    }
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      // already failed
+    }
+  }
+
+  /**
+   * Sends a request.
+   *
+   * @param operation the operation
+   * @param arguments writes the operation's arguments
+   * @param result reads the operation's result from the reply
+   * @return the future result
+   */
+  private <T> CompletableFuture<T> call(byte operation, Consumer<Encoder> arguments, Function<ByteBuffer, T> result) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    int id = _ids.getAndIncrement();
+    _pending.put(id, new Pending<T>(future, result));
+    if (_failure != null) {
+      fail(_failure); // the reader may have gone before the request was registered
+      return future;
+    }
+
+    synchronized (this) {
+      _queued.begin(id, operation);
+      arguments.accept(_queued);
+      _queued.end();
+      if (_writing) {
+        return future; // the writing thread sends it
+      }
+      _writing = true;
+    }
+
+    try {
+      while (true) {
+        synchronized (this) {
+          if (_queued.isEmpty()) {
+            _writing = false;
+            break;
+          }
+          Encoder swap = _sending;
+          _sending = _queued;
+          _queued = swap;
+        }
+        _channel.write(_sending);
+      }
+    } catch (IOException e) {
+      synchronized (this) {
+        _writing = false;
+      }
+      fail(e);
+    }
+
+    return future;
+  }
+
+  private static Void none(ByteBuffer payload) {
+    return null;
+  }
+
+  // Operations (see WarehouseManager)
+
+  /** @return the current date */
+  public CompletableFuture<Integer> date() {
+    return call(Protocol.DATE, out -> {}, ByteBuffer::getInt);
+  }
+
+  /** Advances the date by the given number of days. */
+  public CompletableFuture<Void> advanceDate(int days) {
+    return call(Protocol.ADVANCE_DATE, out -> out.putInt(days), BinaryClient::none);
+  }
+
+  /** @return the available balance */
+  public CompletableFuture<Double> availableBalance() {
+    return call(Protocol.AVAILABLE_BALANCE, out -> {}, ByteBuffer::getDouble);
+  }
+
+  /** @return the contabilistic balance */
+  public CompletableFuture<Double> contabilisticBalance() {
+    return call(Protocol.CONTABILISTIC_BALANCE, out -> {}, ByteBuffer::getDouble);
+  }
+
+  /** @return all products */
+  public CompletableFuture<List<String>> listProducts() {
+    return call(Protocol.LIST_PRODUCTS, out -> {}, Protocol::getStrings);
+  }
+
+  /** @return all batches */
+  public CompletableFuture<List<String>> listBatches() {
+    return call(Protocol.LIST_BATCHES, out -> {}, Protocol::getStrings);
+  }
+
+  /** Lists a product's batches. */
+  public CompletableFuture<List<String>> listProductBatches(String product) {
+    return call(Protocol.LIST_PRODUCT_BATCHES, out -> out.putString(product), Protocol::getStrings);
+  }
+
+  /** Lists a partner's batches. */
+  public CompletableFuture<List<String>> listPartnerBatches(String partner) {
+    return call(Protocol.LIST_PARTNER_BATCHES, out -> out.putString(partner), Protocol::getStrings);
+  }
+
+  /** Lists the batches cheaper than the given price. */
+  public CompletableFuture<List<String>> listBatchesUnder(float price) {
+    return call(Protocol.LIST_BATCHES_UNDER, out -> out.putFloat(price), Protocol::getStrings);
+  }
+
+  /** @return all partners */
+  public CompletableFuture<List<String>> listPartners() {
+    return call(Protocol.LIST_PARTNERS, out -> {}, Protocol::getStrings);
+  }
+
+  /** Registers a partner (id, name, address). */
+  public CompletableFuture<Void> registerPartner(String id, String name, String address) {
+    return call(Protocol.REGISTER_PARTNER, out -> out.putString(id).putString(name).putString(address), BinaryClient::none);
+  }
+
+  /** Shows a partner, then its notifications (which are cleared). */
+  public CompletableFuture<List<String>> showPartner(String partner) {
+    return call(Protocol.SHOW_PARTNER, out -> out.putString(partner), Protocol::getStrings);
+  }
+
+  /** Toggles a partner's notifications about a product. */
+  public CompletableFuture<Void> toggleNotifications(String partner, String product) {
+    return call(Protocol.TOGGLE_NOTIFICATIONS, out -> out.putString(partner).putString(product), BinaryClient::none);
+  }
+
+  /** Lists a partner's sales. */
+  public CompletableFuture<List<String>> partnerSales(String partner) {
+    return call(Protocol.PARTNER_SALES, out -> out.putString(partner), Protocol::getStrings);
+  }
+
+  /** Lists a partner's acquisitions. */
+  public CompletableFuture<List<String>> partnerAcquisitions(String partner) {
+    return call(Protocol.PARTNER_ACQUISITIONS, out -> out.putString(partner), Protocol::getStrings);
+  }
+
+  /** Lists a partner's paid sales. */
+  public CompletableFuture<List<String>> partnerPayments(String partner) {
+    return call(Protocol.PARTNER_PAYMENTS, out -> out.putString(partner), Protocol::getStrings);
+  }
+
+  /** Shows a transaction. */
+  public CompletableFuture<String> showTransaction(int transaction) {
+    return call(Protocol.SHOW_TRANSACTION, out -> out.putInt(transaction), Protocol::getString);
+  }
+
+  /** Pays a sale. */
+  public CompletableFuture<Void> pay(int transaction) {
+    return call(Protocol.PAY, out -> out.putInt(transaction), BinaryClient::none);
+  }
+
+  /** Sells (partner, deadline, product, amount). */
+  public CompletableFuture<Void> sale(String partner, int deadline, String product, int amount) {
+    return call(Protocol.SALE, out -> out.putString(partner).putInt(deadline).putString(product).putInt(amount), BinaryClient::none);
+  }
+
+  /** Breaks down a product (partner, product, amount). */
+  public CompletableFuture<Void> breakdown(String partner, String product, int amount) {
+    return call(Protocol.BREAKDOWN, out -> out.putString(partner).putString(product).putInt(amount), BinaryClient::none);
+  }
+
+  /** Acquires a known product (partner, product, unit price, amount). */
+  public CompletableFuture<Void> acquire(String partner, String product, float price, int amount) {
+    return call(Protocol.ACQUIRE, out -> out.putString(partner).putString(product).putFloat(price).putInt(amount), BinaryClient::none);
+  }
+
+  /** Acquires a new simple product (partner, product, unit price, amount). */
+  public CompletableFuture<Void> acquireNewSimple(String partner, String product, float price, int amount) {
+    return call(Protocol.ACQUIRE_SIMPLE, out -> out.putString(partner).putString(product).putFloat(price).putInt(amount), BinaryClient::none);
+  }
+
+  /**
+   * Acquires a new derivative product (partner, product, unit price, amount,
+   * recipe components and quantities, and multiplier).
+   */
+  public CompletableFuture<Void> acquireNewDerivative(String partner, String product, float price, int amount,
+      List<String> products, List<Integer> quantities, float multiplier) {
+    return call(Protocol.ACQUIRE_DERIVATIVE, out -> out.putString(partner).putString(product).putFloat(price).putInt(amount)
+        .putStrings(products).putInts(quantities).putFloat(multiplier), BinaryClient::none);
+  }
+
+  /** Closes the connection. Pending requests fail. */
+  @Override
+  public void close() {
+    fail(new IOException("connection closed"));
+  }
+}
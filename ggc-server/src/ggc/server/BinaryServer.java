@@ -0,0 +1,205 @@
+package ggc.server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import ggc.WarehouseManager;
+
+/**
+ * Serves a {@link WarehouseManager} over the binary protocol (see
+ * {@link Protocol}), on a loopback TCP port or a Unix domain socket.
+ *
+ * Each connection has its own thread, which executes the connection's
+ * requests in order. Replies are gathered while more requests are already
+ * waiting, and sent when there are none, so a client that pipelines its
+ * requests gets its replies in a few large writes.
+ */
+public class BinaryServer implements AutoCloseable {
+
+  /** Default port. */
+  private static final int DEFAULT_PORT = 7078;
+
+  /** Default number of connection threads (without virtual threads). */
+  private static final int DEFAULT_THREADS = 64;
+
+  /** The warehouse being served. */
+  private final WarehouseManager _manager;
+
+  /** Listening channel. */
+  private final ServerSocketChannel _server;
+
+  /** Runs the connections. */
+  private final ExecutorService _connections;
+
+  /**
+   * @param manager the warehouse to serve
+   * @param address where to listen (an InetSocketAddress or a UnixDomainSocketAddress)
+   * @param threads connection threads, when there are no virtual threads
+   * @throws IOException if the address cannot be used
+   */
+  public BinaryServer(WarehouseManager manager, SocketAddress address, int threads) throws IOException {
+    _manager = manager;
+    if (address instanceof UnixDomainSocketAddress unix) {
+      Files.deleteIfExists(unix.getPath());
+      _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    } else {
+      _server = ServerSocketChannel.open();
+    }
+    _server.bind(address);
+    _connections = ApiServer.newExecutor(threads);
+  }
+
+  /** @return the address being listened on */
+  public SocketAddress address() throws IOException {
+    return _server.getLocalAddress();
+  }
+
+  /**
+   * Accepts connections and serves them, until the server is closed.
+   */
+  public void serve() {
+    while (_server.isOpen()) {
+      try {
+        SocketChannel channel = _server.accept();
+        if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+          channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        _connections.execute(() -> run(channel));
+      } catch (IOException e) {
+        if (_server.isOpen()) {
+          System.err.println("accept failed: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Serves a connection until the client closes it.
+   *
+   * @param channel the connection
+   */
+  private void run(SocketChannel channel) {
+    Encoder out = new Encoder();
+
+    try (FrameChannel frames = new FrameChannel(channel)) {
+      while (true) {
+        if (!frames.hasFrame() && !out.isEmpty()) {
+          frames.write(out);
+        }
+
+        ByteBuffer frame = frames.read();
+        if (frame == null) {
+          break;
+        }
+        execute(frame.getInt(), frame.get(), frame, out);
+      }
+    } catch (IOException e) {
+      System.err.println("connection failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Executes a request and writes its reply.
+   *
+   * @param id request id
+   * @param operation requested operation
+   * @param in the operation's arguments
+   * @param out where to write the reply
+   */
+  private void execute(int id, byte operation, ByteBuffer in, Encoder out) {
+    try {
+      out.begin(id, Protocol.OK);
+      switch (operation) {
+        case Protocol.DATE -> out.putInt(_manager.requestDate());
+        case Protocol.ADVANCE_DATE -> _manager.requestDateToAdvance(in.getInt());
+        case Protocol.AVAILABLE_BALANCE -> out.putDouble(_manager.requestAvailableBalance());
+        case Protocol.CONTABILISTIC_BALANCE -> out.putDouble(_manager.requestContabilisticBalance());
+        case Protocol.LIST_PRODUCTS -> out.putStrings(_manager.requestListAllProducts());
+        case Protocol.LIST_BATCHES -> out.putStrings(_manager.requestListAllBatches());
+        case Protocol.LIST_PRODUCT_BATCHES -> out.putStrings(_manager.requestListBatchesByProduct(Protocol.getString(in)));
+        case Protocol.LIST_PARTNER_BATCHES -> out.putStrings(_manager.requestListBatchesByPartner(Protocol.getString(in)));
+        case Protocol.LIST_BATCHES_UNDER -> out.putStrings(_manager.requestListBatchesUnderGivenPrice(in.getFloat()));
+        case Protocol.LIST_PARTNERS -> out.putStrings(_manager.requestListAllPartners());
+        case Protocol.REGISTER_PARTNER -> _manager.requestRegisterPartner(Protocol.getString(in), Protocol.getString(in), Protocol.getString(in));
+        case Protocol.SHOW_PARTNER -> out.putStrings(_manager.requestShowSpecificPartner(Protocol.getString(in)));
+        case Protocol.TOGGLE_NOTIFICATIONS -> _manager.requestToggleProductNotifications(Protocol.getString(in), Protocol.getString(in));
+        case Protocol.PARTNER_SALES -> out.putStrings(_manager.requestShowPartnerSales(Protocol.getString(in)));
+        case Protocol.PARTNER_ACQUISITIONS -> out.putStrings(_manager.requestShowPartnerAcquisitions(Protocol.getString(in)));
+        case Protocol.PARTNER_PAYMENTS -> out.putStrings(_manager.requestShowPartnerPaidSales(Protocol.getString(in)));
+        case Protocol.SHOW_TRANSACTION -> out.putString(_manager.requestShowTransaction(in.getInt()));
+        case Protocol.PAY -> _manager.requestPay(in.getInt());
+        case Protocol.SALE -> _manager.requestAttemptSale(Protocol.getString(in), in.getInt(), Protocol.getString(in), in.getInt());
+        case Protocol.BREAKDOWN -> _manager.requestAttemptBreakdown(Protocol.getString(in), Protocol.getString(in), in.getInt());
+        case Protocol.ACQUIRE -> _manager.requestAcquire(Protocol.getString(in), Protocol.getString(in), in.getFloat(), in.getInt());
+        case Protocol.ACQUIRE_SIMPLE -> _manager.requestAcquireNewProductSimple(Protocol.getString(in), Protocol.getString(in), in.getFloat(), in.getInt());
+        case Protocol.ACQUIRE_DERIVATIVE -> _manager.requestAcquireNewProductDerivative(Protocol.getString(in), Protocol.getString(in),
+            in.getFloat(), in.getInt(), Protocol.getStrings(in), Protocol.getInts(in), in.getFloat());
+        default -> throw new BadRequestException("unknown operation: " + operation);
+      }
+      out.end();
+    } catch (BufferUnderflowException e) {
+      out.cancel();
+      Protocol.putError(out, id, new BadRequestException("malformed arguments for operation " + operation));
+    } catch (Exception e) {
+      out.cancel();
+      if (!Protocol.putError(out, id, e)) {
+        Protocol.putError(out, id, new BadRequestException(e.toString()));
+      }
+    }
+  }
+
+  /** Stops accepting connections. Open connections are served to the end. */
+  @Override
+  public void close() {
+    try {
+      _server.close();
+    } catch (IOException e) {
+      System.err.println("close failed: " + e.getMessage());
+    }
+    _connections.shutdown();
+  }
+
+  /**
+   * @return the address given by -Dsocket (a Unix domain socket path) or
+   *         -Dport (on the loopback address)
+   */
+  static SocketAddress configuredAddress() {
+    String socket = System.getProperty("socket");
+    if (socket != null) {
+      return UnixDomainSocketAddress.of(Path.of(socket));
+    }
+    return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.getInteger("port", DEFAULT_PORT));
+  }
+
+  /**
+   * Serves a warehouse (imported from -Dimport, if given) on -Dsocket or
+   * -Dport (7078 by default).
+   *
+   * @param args not used
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    WarehouseManager manager = new WarehouseManager();
+
+    String datafile = System.getProperty("import");
+    if (datafile != null) {
+      manager.importFile(datafile);
+    }
+
+    try (BinaryServer server = new BinaryServer(manager, configuredAddress(), Integer.getInteger("threads", DEFAULT_THREADS))) {
+      System.err.println("Listening on " + server.address());
+      server.serve();
+    }
+  }
+}
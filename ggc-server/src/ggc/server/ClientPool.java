@@ -0,0 +1,77 @@
+package ggc.server;
+
+import java.io.*;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed number of connections to a {@link BinaryServer}, handed out in
+ * turn. Since every connection carries any number of requests at once, the
+ * pool only spreads the requests over connections (and so over the server's
+ * connection threads). Connections are opened when first needed, and
+ * reopened if lost. Each connection has its own lock, held only to open it,
+ * so callers given an open connection never wait for one being opened.
+ */
+public class ClientPool implements AutoCloseable {
+
+  /** Server address. */
+  private final SocketAddress _address;
+
+  /** The connections (null until opened). */
+  private final AtomicReferenceArray<BinaryClient> _clients;
+
+  /** Locks held while opening each connection. */
+  private final Object[] _locks;
+
+  /** Next connection to hand out. */
+  private final AtomicInteger _next = new AtomicInteger();
+
+  /**
+   * @param address server address
+   * @param size number of connections
+   */
+  public ClientPool(SocketAddress address, int size) {
+    _address = address;
+    _clients = new AtomicReferenceArray<BinaryClient>(size);
+    _locks = new Object[size];
+    for (int i = 0; i < size; i++) {
+      _locks[i] = new Object();
+    }
+  }
+
+  /**
+   * @return the next connection
+   * @throws IOException if the connection must be (re)opened and cannot be
+   */
+  public BinaryClient get() throws IOException {
+    int slot = Math.floorMod(_next.getAndIncrement(), _clients.length());
+    BinaryClient client = _clients.get(slot);
+    if (client != null && client.isOpen()) {
+      return client;
+    }
+
+    // Callers of the same connection wait for one connect between them
+    synchronized (_locks[slot]) {
+      client = _clients.get(slot);
+      if (client == null || !client.isOpen()) {
+        client = BinaryClient.connect(_address);
+        _clients.set(slot, client);
+      }
+      return client;
+    }
+  }
+
+  /** Closes the connections. */
+  @Override
+  public void close() {
+    for (int i = 0; i < _clients.length(); i++) {
+      synchronized (_locks[i]) {
+        BinaryClient client = _clients.getAndSet(i, null);
+        if (client != null) {
+          client.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package ggc.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Growable buffer where frames of the binary protocol are written, one
+ * after the other, before being sent together.
+ */
+final class Encoder {
+
+  /** Initial capacity. */
+  private static final int INITIAL_SIZE = 8192;
+
+  /** Written bytes. */
+  private byte[] _bytes = new byte[INITIAL_SIZE];
+
+  /** Number of written bytes. */
+  private int _size;
+
+  /** Start of the frame being written. */
+  private int _frame = -1;
+
+  /**
+   * @param more bytes about to be written
+   */
+  private void reserve(int more) {
+    if (_size + more > _bytes.length) {
+      _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _size + more));
+    }
+  }
+
+  /**
+   * Starts a frame (its length is written by end()).
+   *
+   * @param id request id
+   * @param code operation or status
+   * @return this encoder
+   */
+  Encoder begin(int id, byte code) {
+    _frame = _size;
+    putInt(0);
+    putInt(id);
+    reserve(1);
+    _bytes[_size++] = code;
+    return this;
+  }
+
+  /** Ends the frame being written. */
+  void end() {
+    int length = _size - _frame - Integer.BYTES;
+    ByteBuffer.wrap(_bytes, _frame, Integer.BYTES).putInt(length);
+    _frame = -1;
+  }
+
+  /** Drops the frame being written. */
+  void cancel() {
+    if (_frame >= 0) {
+      _size = _frame;
+      _frame = -1;
+    }
+  }
+
+  /**
+   * @param value value to write
+   * @return this encoder
+   */
+  Encoder putInt(int value) {
+    reserve(Integer.BYTES);
+    _bytes[_size++] = (byte) (value >>> 24);
+    _bytes[_size++] = (byte) (value >>> 16);
+    _bytes[_size++] = (byte) (value >>> 8);
+    _bytes[_size++] = (byte) value;
+    return this;
+  }
+
+  /**
+   * @param value value to write
+   * @return this encoder
+   */
+  Encoder putFloat(float value) {
+    return putInt(Float.floatToIntBits(value));
+  }
+
+  /**
+   * @param value value to write
+   * @return this encoder
+   */
+  Encoder putDouble(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return putInt((int) (bits >>> 32)).putInt((int) bits);
+  }
+
+  /**
+   * @param value value to write
+   * @return this encoder
+   */
+  Encoder putString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    putInt(bytes.length);
+    reserve(bytes.length);
+    System.arraycopy(bytes, 0, _bytes, _size, bytes.length);
+    _size += bytes.length;
+    return this;
+  }
+
+  /**
+   * @param values values to write
+   * @return this encoder
+   */
+  Encoder putStrings(Collection<String> values) {
+    putInt(values.size());
+    for (String value: values) {
+      putString(value);
+    }
+    return this;
+  }
+
+  /**
+   * @param values values to write
+   * @return this encoder
+   */
+  Encoder putInts(Collection<Integer> values) {
+    putInt(values.size());
+    for (int value: values) {
+      putInt(value);
+    }
+    return this;
+  }
+
+  /** @return whether nothing is written */
+  boolean isEmpty() {
+    return _size == 0;
+  }
+
+  /** @return the written bytes (valid until the encoder changes) */
+  ByteBuffer buffer() {
+    return ByteBuffer.wrap(_bytes, 0, _size);
+  }
+
+  /** Forgets the written bytes. */
+  void clear() {
+    _size = 0;
+    _frame = -1;
+  }
+}
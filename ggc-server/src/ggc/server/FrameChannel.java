@@ -0,0 +1,108 @@
+package ggc.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Frames of the binary protocol over a (blocking) socket channel. Incoming
+ * bytes are read in large blocks, so a run of pipelined frames costs one
+ * read; outgoing frames are written from an Encoder, all at once.
+ */
+final class FrameChannel implements Closeable {
+
+  /** Initial size of the read buffer. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The connection. */
+  private final SocketChannel _channel;
+
+  /** Bytes read and not yet taken (in read mode). */
+  private ByteBuffer _in = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+  /**
+   * @param channel the connection (in blocking mode)
+   */
+  FrameChannel(SocketChannel channel) {
+    _channel = channel;
+  }
+
+  /**
+   * @return whether a whole frame has been read and not yet taken
+   * @throws IOException if the next frame's length is invalid
+   */
+  boolean hasFrame() throws IOException {
+    return _in.remaining() >= Integer.BYTES && _in.remaining() >= Integer.BYTES + length();
+  }
+
+  /**
+   * @return the length of the next frame (whose length has been read)
+   * @throws IOException if the length is invalid
+   */
+  private int length() throws IOException {
+    int length = _in.getInt(_in.position());
+    if (length < Protocol.HEADER || length > Protocol.MAX_FRAME) {
+      throw new IOException("invalid frame length: " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Takes the next frame, reading it if needed. The frame shares the read
+   * buffer: it must be consumed before the next call.
+   *
+   * @return the frame (id, code and payload), or null at the end of the stream
+   * @throws IOException
+   */
+  ByteBuffer read() throws IOException {
+    while (!hasFrame()) {
+      if (!fill()) {
+        return null;
+      }
+    }
+
+    int length = _in.getInt();
+    ByteBuffer frame = _in.slice(_in.position(), length);
+    _in.position(_in.position() + length);
+    return frame;
+  }
+
+  /**
+   * Reads more bytes, growing the buffer if the next frame does not fit.
+   *
+   * @return false at the end of the stream
+   * @throws IOException
+   */
+  private boolean fill() throws IOException {
+    int needed = _in.remaining() >= Integer.BYTES ? Integer.BYTES + length() : Integer.BYTES;
+
+    if (needed > _in.capacity()) {
+      _in = ByteBuffer.allocate(needed).put(_in);
+    } else {
+      _in.compact();
+    }
+
+    int read = _channel.read(_in);
+    _in.flip();
+    return read >= 0;
+  }
+
+  /**
+   * Sends the encoder's frames and clears it.
+   *
+   * @param out frames to send
+   * @throws IOException
+   */
+  void write(Encoder out) throws IOException {
+    ByteBuffer buffer = out.buffer();
+    while (buffer.hasRemaining()) {
+      _channel.write(buffer);
+    }
+    out.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    _channel.close();
+  }
+}
@@ -0,0 +1,88 @@
+package ggc.server;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The little JSON the API needs: strings, numbers and flat objects, and
+ * arrays of strings written element by element.
+ */
+final class Json {
+
+  private Json() {
+  }
+
+  /**
+   * @param text text to quote
+   * @return the text as a JSON string
+   */
+  static String quote(String text) {
+    StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '"' -> quoted.append("\\\"");
+        case '\\' -> quoted.append("\\\\");
+        case '\n' -> quoted.append("\\n");
+        case '\r' -> quoted.append("\\r");
+        case '\t' -> quoted.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            quoted.append(String.format("\\u%04x", (int) c));
+          } else {
+            quoted.append(c);
+          }
+        }
+      }
+    }
+
+    return quoted.append('"').toString();
+  }
+
+  /**
+   * @param fields names and values, alternately (values are strings, numbers or booleans)
+   * @return the fields as a JSON object
+   */
+  static String object(Object... fields) {
+    StringBuilder object = new StringBuilder("{");
+
+    for (int i = 0; i < fields.length; i += 2) {
+      if (i > 0) {
+        object.append(',');
+      }
+      object.append(quote(fields[i].toString())).append(':');
+
+      Object value = fields[i + 1];
+      if (value instanceof Number || value instanceof Boolean) {
+        object.append(value);
+      } else {
+        object.append(quote(String.valueOf(value)));
+      }
+    }
+
+    return object.append('}').toString();
+  }
+
+  /**
+   * Writes an array of strings, one element at a time.
+   *
+   * @param items the strings
+   * @param out where to write
+   * @throws IOException
+   */
+  static void writeArray(Collection<String> items, Writer out) throws IOException {
+    out.write('[');
+
+    boolean first = true;
+    for (String item: items) {
+      if (!first) {
+        out.write(",\n");
+      }
+      out.write(quote(item));
+      first = false;
+    }
+
+    out.write("]\n");
+  }
+}
@@ -0,0 +1,105 @@
+package ggc.server;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Parameters of a request: those of the query string and those of a form
+ * (application/x-www-form-urlencoded) body.
+ */
+final class Parameters {
+
+  /** Parameter values, by name */
+  private final Map<String, String> _values = new HashMap<String, String>();
+
+  /**
+   * @param query query string (may be null)
+   * @param body request body
+   * @throws IOException
+   * @throws BadRequestException if a name or value is not properly encoded
+   */
+  Parameters(String query, InputStream body) throws IOException, BadRequestException {
+    parse(query);
+    parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param encoded name=value pairs separated by '&' (may be null)
+   * @throws BadRequestException if a name or value is not properly encoded
+   */
+  private void parse(String encoded) throws BadRequestException {
+    if (encoded == null || encoded.isEmpty()) {
+      return;
+    }
+
+    for (String pair: encoded.split("&")) {
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      String value = equals < 0 ? "" : pair.substring(equals + 1);
+      _values.put(decode(pair, name), decode(pair, value));
+    }
+  }
+
+  /**
+   * @param pair the name=value pair the text comes from
+   * @param text a name or value
+   * @return the text, decoded
+   * @throws BadRequestException if the text has a malformed escape
+   */
+  private static String decode(String pair, String text) throws BadRequestException {
+    try {
+      return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("malformed parameter: " + pair);
+    }
+  }
+
+  /**
+   * @param name parameter name
+   * @return whether the parameter was given
+   */
+  boolean has(String name) {
+    return _values.containsKey(name);
+  }
+
+  /**
+   * @param name parameter name
+   * @return the parameter's value
+   * @throws BadRequestException if the parameter is missing
+   */
+  String string(String name) throws BadRequestException {
+    String value = _values.get(name);
+    if (value == null) {
+      throw new BadRequestException("missing parameter: " + name);
+    }
+    return value;
+  }
+
+  /**
+   * @param name parameter name
+   * @return the parameter's value, as an integer
+   * @throws BadRequestException if the parameter is missing or not an integer
+   */
+  int integer(String name) throws BadRequestException {
+    try {
+      return Integer.parseInt(string(name));
+    } catch (NumberFormatException e) {
+      throw new BadRequestException("not an integer: " + name);
+    }
+  }
+
+  /**
+   * @param name parameter name
+   * @return the parameter's value, as a real number
+   * @throws BadRequestException if the parameter is missing or not a number
+   */
+  float real(String name) throws BadRequestException {
+    try {
+      return Float.parseFloat(string(name));
+    } catch (NumberFormatException e) {
+      throw new BadRequestException("not a number: " + name);
+    }
+  }
+}
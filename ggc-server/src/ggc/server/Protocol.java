@@ -0,0 +1,201 @@
+package ggc.server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import ggc.exceptions.*;
+
+/**
+ * The binary protocol: length-prefixed frames over a stream (TCP or a Unix
+ * domain socket), one request frame per WarehouseManager operation and one
+ * reply frame per request.
+ *
+ * <pre>
+ * frame   = length:int id:int code:byte payload   (length counts id, code and payload)
+ * request = code is the operation (see below), payload its arguments
+ * reply   = same id as the request, code is the status (OK or an error), payload the result
+ * </pre>
+ *
+ * Integers are big-endian, reals are IEEE floats (doubles for balances),
+ * and strings are an int byte count followed by UTF-8 bytes. Lists of
+ * strings are an int count followed by the strings. Ids let a client send
+ * many requests without waiting for their replies: a connection executes
+ * its requests in order and answers each one with its id.
+ */
+final class Protocol {
+
+  /** Largest frame accepted. */
+  static final int MAX_FRAME = 64 << 20;
+
+  /** Bytes before the payload (id and code). */
+  static final int HEADER = Integer.BYTES + 1;
+
+  // Operations (arguments -> result)
+
+  /** () -> int */
+  static final byte DATE = 1;
+  /** (days:int) -> () */
+  static final byte ADVANCE_DATE = 2;
+  /** () -> double */
+  static final byte AVAILABLE_BALANCE = 3;
+  /** () -> double */
+  static final byte CONTABILISTIC_BALANCE = 4;
+  /** () -> strings */
+  static final byte LIST_PRODUCTS = 5;
+  /** () -> strings */
+  static final byte LIST_BATCHES = 6;
+  /** (product:string) -> strings */
+  static final byte LIST_PRODUCT_BATCHES = 7;
+  /** (partner:string) -> strings */
+  static final byte LIST_PARTNER_BATCHES = 8;
+  /** (price:float) -> strings */
+  static final byte LIST_BATCHES_UNDER = 9;
+  /** () -> strings */
+  static final byte LIST_PARTNERS = 10;
+  /** (id:string name:string address:string) -> () */
+  static final byte REGISTER_PARTNER = 11;
+  /** (partner:string) -> strings (the partner, then its notifications) */
+  static final byte SHOW_PARTNER = 12;
+  /** (partner:string product:string) -> () */
+  static final byte TOGGLE_NOTIFICATIONS = 13;
+  /** (partner:string) -> strings */
+  static final byte PARTNER_SALES = 14;
+  /** (partner:string) -> strings */
+  static final byte PARTNER_ACQUISITIONS = 15;
+  /** (partner:string) -> strings */
+  static final byte PARTNER_PAYMENTS = 16;
+  /** (transaction:int) -> string */
+  static final byte SHOW_TRANSACTION = 17;
+  /** (transaction:int) -> () */
+  static final byte PAY = 18;
+  /** (partner:string deadline:int product:string amount:int) -> () */
+  static final byte SALE = 19;
+  /** (partner:string product:string amount:int) -> () */
+  static final byte BREAKDOWN = 20;
+  /** (partner:string product:string price:float amount:int) -> () */
+  static final byte ACQUIRE = 21;
+  /** (partner:string product:string price:float amount:int) -> () */
+  static final byte ACQUIRE_SIMPLE = 22;
+  /** (partner:string product:string price:float amount:int products:strings quantities:ints multiplier:float) -> () */
+  static final byte ACQUIRE_DERIVATIVE = 23;
+
+  // Statuses (error payloads)
+
+  /** Success (the operation's result). */
+  static final byte OK = 0;
+  /** (id:string) */
+  static final byte NO_SUCH_PARTNER = 1;
+  /** (id:string) */
+  static final byte NO_SUCH_PRODUCT = 2;
+  /** (id:int) */
+  static final byte NO_SUCH_TRANSACTION = 3;
+  /** (id:string) */
+  static final byte DUPLICATE_PARTNER = 4;
+  /** (product:string requested:int available:int) */
+  static final byte NOT_ENOUGH_PRODUCTS = 5;
+  /** (days:int) */
+  static final byte NO_SUCH_DATE = 6;
+  /** (message:string): unknown operation or malformed arguments */
+  static final byte BAD_REQUEST = 7;
+
+  private Protocol() {
+  }
+
+  /**
+   * @param buffer where to read
+   * @return the next string
+   */
+  static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return string;
+  }
+
+  /**
+   * @param buffer where to read
+   * @return the next list of strings
+   */
+  static ArrayList<String> getStrings(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    ArrayList<String> strings = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      strings.add(getString(buffer));
+    }
+    return strings;
+  }
+
+  /**
+   * @param buffer where to read
+   * @return the next list of ints
+   */
+  static ArrayList<Integer> getInts(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+      throw new BufferUnderflowException();
+    }
+
+    ArrayList<Integer> ints = new ArrayList<Integer>(count);
+    for (int i = 0; i < count; i++) {
+      ints.add(buffer.getInt());
+    }
+    return ints;
+  }
+
+  /**
+   * Writes an exception thrown by an operation as an error reply's status and payload.
+   *
+   * @param out reply being written (its header not yet written)
+   * @param id request id
+   * @param e the exception
+   * @return whether the exception is one the protocol describes
+   */
+  static boolean putError(Encoder out, int id, Exception e) {
+    if (e instanceof NoSuchPartnerException n) {
+      out.begin(id, NO_SUCH_PARTNER).putString(n.getId());
+    } else if (e instanceof NoSuchProductException n) {
+      out.begin(id, NO_SUCH_PRODUCT).putString(n.getId());
+    } else if (e instanceof NoSuchTransactionException n) {
+      out.begin(id, NO_SUCH_TRANSACTION).putInt(n.getId());
+    } else if (e instanceof DuplicatePartnerException d) {
+      out.begin(id, DUPLICATE_PARTNER).putString(d.getId());
+    } else if (e instanceof NotEnoughProductsException n) {
+      out.begin(id, NOT_ENOUGH_PRODUCTS).putString(n.getProduct()).putInt(n.getStockRecquired()).putInt(n.getCurrentStock());
+    } else if (e instanceof NoSuchDateException n) {
+      out.begin(id, NO_SUCH_DATE).putInt(n.getDate());
+    } else if (e instanceof BadRequestException) {
+      out.begin(id, BAD_REQUEST).putString(e.getMessage());
+    } else {
+      return false;
+    }
+    out.end();
+    return true;
+  }
+
+  /**
+   * @param status error status of a reply
+   * @param payload the reply's payload
+   * @return the exception the reply describes
+   */
+  static Exception getError(byte status, ByteBuffer payload) {
+    return switch (status) {
+      case NO_SUCH_PARTNER -> new NoSuchPartnerException(getString(payload));
+      case NO_SUCH_PRODUCT -> new NoSuchProductException(getString(payload));
+      case NO_SUCH_TRANSACTION -> new NoSuchTransactionException(payload.getInt());
+      case DUPLICATE_PARTNER -> new DuplicatePartnerException(getString(payload));
+      case NOT_ENOUGH_PRODUCTS -> new NotEnoughProductsException(getString(payload), payload.getInt(), payload.getInt());
+      case NO_SUCH_DATE -> new NoSuchDateException(payload.getInt());
+      case BAD_REQUEST -> new IllegalArgumentException(getString(payload));
+      default -> new IllegalStateException("unknown status: " + status);
+    };
+  }
+}
@@ -21,6 +21,9 @@ public class Dialog implements AutoCloseable {
   /** Single instance of this class. */
   public static/* final */Dialog UI = new Dialog();
 
+  /** Dialog of the session run by the current thread (see current()). */
+  private static final ThreadLocal<Dialog> CURRENT = new ThreadLocal<>();
+
   /** Interaction with subsystem (text, swing, ...). */
   private InteractionDriver _backend;
 
@@ -43,6 +46,28 @@ public class Dialog implements AutoCloseable {
     _backend = backend;
   }
 
+  /**
+   * Menus, forms and displays created without a dialog use this one.
+   * 
+   * @return the current thread's dialog, if one was set, or the single instance.
+   */
+  public static Dialog current() {
+    Dialog dialog = CURRENT.get();
+    return dialog != null ? dialog : UI;
+  }
+
+  /**
+   * Sets the dialog of the session run by the current thread.
+   * 
+   * @param dialog the session's dialog (null to go back to the single instance).
+   */
+  public static void setCurrent(Dialog dialog) {
+    if (dialog != null)
+      CURRENT.set(dialog);
+    else
+      CURRENT.remove();
+  }
+
   /** @param menu menu to open. */
   public void open(Menu menu) {
     _backend.open(menu);
@@ -1,7 +1,5 @@
 package pt.tecnico.uilib;
 
-import static pt.tecnico.uilib.Dialog.UI;
-
 import java.util.Collection;
 
 /** Display lines of text. */
@@ -16,16 +14,18 @@ public class Display {
   /** Text to display */
   private StringBuilder _text = new StringBuilder();
 
-  /** Build a Display without a title and use the static IO */
+  /** Build a Display without a title and use the current dialog */
   public Display() {
     this("");
   }
 
   /**
+   * Uses the current dialog (see Dialog.current()).
+   * 
    * @param title the title
    */
   public Display(String title) {
-    this(UI, title);
+    this(Dialog.current(), title);
   }
 
   /**
@@ -1,7 +1,5 @@
 package pt.tecnico.uilib.forms;
 
-import static pt.tecnico.uilib.Dialog.UI;
-
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -23,16 +21,18 @@ public class Form {
   /** A list of Input requests */
   private Map<String, Field<?>> _fields = new LinkedHashMap<>();
 
-  /** use default values: static UI and no title */
+  /** use default values: current dialog and no title */
   public Form() {
     this(null);
   }
 
   /**
+   * Uses the current dialog (see Dialog.current()).
+   * 
    * @param title the title
    */
   public Form(String title) {
-    this(UI, title);
+    this(Dialog.current(), title);
   }
 
   /**
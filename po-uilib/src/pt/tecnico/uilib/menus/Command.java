@@ -12,6 +12,9 @@ import pt.tecnico.uilib.forms.Form;
  */
 public abstract class Command<Receiver> {
 
+  /** Observer of every command execution (null when none, the default). */
+  private static volatile CommandListener _listener = null;
+
   /** Indicates whether, in a menu, this is the last command. */
   private boolean _last;
 
@@ -134,13 +137,52 @@ public abstract class Command<Receiver> {
     return _form.stringField(key);
   }
 
+  /**
+   * Sets the observer of every command execution (e.g. a {@link CommandStatistics}).
+   * 
+   * @param listener the new listener (null to disable instrumentation).
+   */
+  public static void setListener(CommandListener listener) {
+    _listener = listener;
+  }
+
+  /** @return the observer of every command execution (may be null). */
+  public static CommandListener getListener() {
+    return _listener;
+  }
+
+  /**
+   * Indicates whether executions of this command are reported to the listener.
+   * 
+   * @return true, unless the command's execution is mostly interaction (e.g. opening a menu).
+   */
+  protected boolean isInstrumented() {
+    return true;
+  }
+
   /**
    * @throws CommandException
    */
   public final void performCommand() throws CommandException {
     _display.clear();
     _form.parse();
-    execute();
+
+    CommandListener listener = _listener;
+    if (listener == null || !isInstrumented()) {
+      execute();
+      return;
+    }
+
+    long start = System.nanoTime();
+    Throwable failure = null;
+    try {
+      execute();
+    } catch (CommandException | RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      listener.commandPerformed(this, System.nanoTime() - start, failure);
+    }
   }
 
   /**
@@ -0,0 +1,17 @@
+package pt.tecnico.uilib.menus;
+
+/**
+ * Observer of command executions (see {@link Command#setListener(CommandListener)}).
+ */
+public interface CommandListener {
+
+  /**
+   * Called after a command executes, in the thread that executed it.
+   * 
+   * @param command  the command.
+   * @param duration execution time, in nanoseconds (input forms excluded).
+   * @param failure  the exception the command ended with, or null if it succeeded.
+   */
+  void commandPerformed(Command<?> command, long duration, Throwable failure);
+
+}
@@ -0,0 +1,149 @@
+package pt.tecnico.uilib.menus;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Command listener that keeps, for each command title, the number of
+ * invocations, the number of failures and a latency histogram. It may be read
+ * at any time, while commands are running.
+ */
+public class CommandStatistics implements CommandListener {
+
+  /** Statistics of one command. */
+  public static class Entry {
+
+    /** Bits of precision within each power of two (values are kept within 1/128). */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** Number of linear sub-buckets within each power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Latency counts, by bucket. */
+    private final long[] _buckets = new long[(64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS];
+
+    /** Number of invocations. */
+    private long _count;
+
+    /** Number of failed invocations. */
+    private long _errors;
+
+    /** Total execution time (nanoseconds). */
+    private long _total;
+
+    /** Longest execution time (nanoseconds). */
+    private long _max;
+
+    /**
+     * @param duration execution time, in nanoseconds.
+     * @param failed   whether the invocation failed.
+     */
+    synchronized void record(long duration, boolean failed) {
+      duration = Math.max(0, duration);
+      _buckets[bucket(duration)]++;
+      _count++;
+      _total += duration;
+      _max = Math.max(_max, duration);
+      if (failed)
+        _errors++;
+    }
+
+    /**
+     * @param value a duration.
+     * @return the bucket where the duration is counted.
+     */
+    private static int bucket(long value) {
+      if (value < SUB_BUCKETS)
+        return (int) value;
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @param bucket a bucket.
+     * @return the largest duration counted in the bucket.
+     */
+    private static long highestValue(int bucket) {
+      if (bucket < SUB_BUCKETS)
+        return bucket;
+      int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+      long top = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+      return (top << shift) + (1L << shift) - 1;
+    }
+
+    /** @return the number of invocations. */
+    public synchronized long count() {
+      return _count;
+    }
+
+    /** @return the number of failed invocations. */
+    public synchronized long errors() {
+      return _errors;
+    }
+
+    /** @return the mean execution time, in nanoseconds. */
+    public synchronized double mean() {
+      return _count == 0 ? 0 : (double) _total / _count;
+    }
+
+    /** @return the longest execution time, in nanoseconds. */
+    public synchronized long max() {
+      return _max;
+    }
+
+    /**
+     * @param percentile a percentile (0 to 100).
+     * @return the execution time (nanoseconds) not exceeded by that percentage of invocations.
+     */
+    public synchronized long percentile(double percentile) {
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * _count));
+      long seen = 0;
+      for (int i = 0; i < _buckets.length && _count > 0; i++) {
+        seen += _buckets[i];
+        if (seen >= rank)
+          return Math.min(highestValue(i), _max);
+      }
+      return _max;
+    }
+
+    /** @see java.lang.Object#toString() */
+    @Override
+    public synchronized String toString() {
+      return String.format("count=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", _count, _errors,
+          mean() / 1e3, percentile(50) / 1e3, percentile(99) / 1e3, _max / 1e3);
+    }
+
+  }
+
+  /** Statistics by command title. */
+  private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+
+  /** @see pt.tecnico.uilib.menus.CommandListener#commandPerformed(Command, long, Throwable) */
+  @Override
+  public void commandPerformed(Command<?> command, long duration, Throwable failure) {
+    _entries.computeIfAbsent(command.title(), title -> new Entry()).record(duration, failure != null);
+  }
+
+  /**
+   * @param title a command title.
+   * @return the statistics of the command (null if it was never performed).
+   */
+  public Entry get(String title) {
+    return _entries.get(title);
+  }
+
+  /** @return a copy of the statistics, sorted by command title. */
+  public Map<String, Entry> entries() {
+    return new TreeMap<>(_entries);
+  }
+
+  /** @see java.lang.Object#toString() */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    entries().forEach((title, entry) -> text.append(title).append(": ").append(entry).append('\n'));
+    return text.toString();
+  }
+
+}
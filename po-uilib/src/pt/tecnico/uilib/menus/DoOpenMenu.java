@@ -12,6 +12,12 @@ public class DoOpenMenu extends Command<Menu> {
     super(label, receiver);
   }
 
+  /** Not instrumented: the execution time would be the user's stay in the menu. */
+  @Override
+  protected boolean isInstrumented() {
+    return false;
+  }
+
   /** @see pt.tecnico.po.ui.Command#execute() */
   @Override
   protected final void execute() {
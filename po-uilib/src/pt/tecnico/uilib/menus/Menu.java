@@ -1,7 +1,5 @@
 package pt.tecnico.uilib.menus;
 
-import static pt.tecnico.uilib.Dialog.UI;
-
 import pt.tecnico.uilib.Dialog;
 
 /** Class Menu manages a list of commands. */
@@ -28,11 +26,13 @@ public class Menu {
   }
 
   /**
+   * Uses the current dialog (see Dialog.current()).
+   * 
    * @param title    menu title.
    * @param commands list of commands managed by the menu.
    */
   public Menu(String title, Command<?>... commands) {
-    this(UI, title, commands);
+    this(Dialog.current(), title, commands);
   }
 
   /**
@@ -0,0 +1,141 @@
+package pt.tecnico.uilib.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import pt.tecnico.uilib.Dialog;
+
+/**
+ * Text interaction with many users at once, each through a local TCP
+ * connection. Every connection is a session with its own dialog (a
+ * TextInteraction over the connection), run on its own thread: menus, forms
+ * and displays created by the session use that dialog (see Dialog.current()).
+ *
+ * At most a given number of sessions run at once. While that many are open,
+ * no connections are accepted: new ones wait in the system's backlog until a
+ * session ends.
+ */
+public class SessionServer implements AutoCloseable {
+
+  /** Connections waiting to be accepted. */
+  private static final int BACKLOG = 50;
+
+  /** Listening socket (bound to the loopback address). */
+  private final ServerSocket _server;
+
+  /** Free session slots. */
+  private final Semaphore _slots;
+
+  /** Runs the sessions. */
+  private final ExecutorService _sessions;
+
+  /** What each session does with its dialog (e.g., open the main menu). */
+  private final Consumer<Dialog> _session;
+
+  /**
+   * @param port        port to listen on (0 for any).
+   * @param maxSessions maximum number of simultaneous sessions.
+   * @param session     what each session does with its dialog.
+   * @throws IOException if the port cannot be used.
+   */
+  public SessionServer(int port, int maxSessions, Consumer<Dialog> session) throws IOException {
+    _server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    _slots = new Semaphore(maxSessions);
+    _sessions = newExecutor(maxSessions);
+    _session = session;
+  }
+
+  /**
+   * Sessions get virtual threads where the platform has them (Java 21 on), and
+   * a fixed pool of threads, one per session slot, otherwise.
+   *
+   * @param maxSessions maximum number of simultaneous sessions.
+   * @return executor for the sessions.
+   */
+  private static ExecutorService newExecutor(int maxSessions) {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger count = new AtomicInteger();
+      return Executors.newFixedThreadPool(maxSessions, task -> {
+        Thread thread = new Thread(task, "session-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /** @return the port being listened on. */
+  public int port() {
+    return _server.getLocalPort();
+  }
+
+  /**
+   * Accepts connections and runs their sessions, until the server is closed.
+   *
+   * @throws InterruptedException if interrupted while waiting for a free slot.
+   */
+  public void serve() throws InterruptedException {
+    while (!_server.isClosed()) {
+      _slots.acquire();
+
+      Socket socket;
+      try {
+        socket = _server.accept();
+      } catch (IOException e) {
+        _slots.release();
+        if (!_server.isClosed())
+          System.err.println(Message.errorIO(e));
+        continue;
+      }
+
+      _sessions.execute(() -> run(socket));
+    }
+  }
+
+  /**
+   * Runs a session over a connection, then closes it and frees its slot.
+   *
+   * @param socket the connection.
+   */
+  private void run(Socket socket) {
+    try (socket) {
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+
+      try (Dialog dialog = new Dialog(new TextInteraction(in, out))) {
+        Dialog.setCurrent(dialog);
+        _session.accept(dialog);
+      } finally {
+        Dialog.setCurrent(null);
+      }
+    } catch (IOException e) {
+      System.err.println(Message.errorIO(e));
+    } finally {
+      _slots.release();
+    }
+  }
+
+  /** Stops accepting connections. Open sessions run to the end. */
+  @Override
+  public void close() {
+    try {
+      _server.close();
+    } catch (IOException e) {
+      System.err.println(Message.errorIO(e));
+    }
+    _sessions.shutdown();
+  }
+
+}
@@ -73,6 +73,17 @@ public class TextInteraction implements InteractionDriver {
     _writeInput = Boolean.getBoolean(Properties.WRITE_INPUT);
   }
 
+  /**
+   * Interaction over the given channels (e.g., those of a network session).
+   * 
+   * @param in  input channel.
+   * @param out output channel.
+   */
+  public TextInteraction(BufferedReader in, PrintStream out) {
+    _in = in;
+    _out = out;
+  }
+
   /** @see pt.tecnico.uilib.InteractionDriver#close() */
   @Override
   public void close() {
@@ -169,6 +180,7 @@ public class TextInteraction implements InteractionDriver {
   private final String readString(String prompt) throws IOException {
     if (prompt != null)
       _out.print(prompt);
+    _out.flush();
 
     String str = _in.readLine();
     if (str == null)